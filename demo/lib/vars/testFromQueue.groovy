@@ -0,0 +1,33 @@
+def call(parallelism, testMode, inclusionsFile, exclusionsFile, stageName, prepare, run) {
+  def workers
+  node {
+    deleteDir()
+    prepare()
+    workers = testQueue parallelism: parallelism, testMode: testMode, stage: stageName
+  }
+  def branches = [:]
+  for (int i = 0; i < workers; i++) {
+    def num = i
+    branches["worker${num}"] = {
+      stage("Test Worker #${num + 1}") {
+        node {
+          stage('Preparation') {
+            deleteDir()
+            prepare()
+          }
+          def batch
+          def batches = 0
+          while ((batch = claimTests()) != null) {
+            echo "in worker$num: $batch"
+            writeFile file: (batch.includes ? inclusionsFile : exclusionsFile), text: batch.list.join("\n")
+            writeFile file: (batch.includes ? exclusionsFile : inclusionsFile), text: ''
+            stage("Batch #${++batches}") {
+              run()
+            }
+          }
+        }
+      }
+    }
+  }
+  parallel branches
+}
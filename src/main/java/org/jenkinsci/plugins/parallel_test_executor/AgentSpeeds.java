@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH;
+
+/**
+ * Speed of the agents of each label, as how many times longer than predicted tests take on them,
+ * so that splits meant to run on slower agents get less work.
+ * <p>
+ * Factors are learned from the {@link SplitReport} of previous builds, comparing the actual duration of each branch
+ * with its prediction, for the label the branch targeted and for each label of the agent it ran on.
+ * They are relative to all the branches, so that overhead common to all agents does not count.
+ * </p>
+ */
+final class AgentSpeeds {
+
+    /**
+     * @param labels labels separated by commas
+     */
+    @NonNull
+    static List<String> parseLabels(@CheckForNull String labels) {
+        List<String> r = new ArrayList<>();
+        if (labels != null) {
+            for (String label : labels.split(",")) {
+                if (!label.isBlank()) {
+                    r.add(label.trim());
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param speeds {@code label=factor} pairs separated by commas
+     * @throws IllegalArgumentException if a pair is malformed or a factor not positive
+     */
+    @NonNull
+    static Map<String, Double> parseSpeeds(@CheckForNull String speeds) {
+        Map<String, Double> r = new LinkedHashMap<>();
+        if (speeds != null) {
+            for (String pair : speeds.split(",")) {
+                if (pair.isBlank()) {
+                    continue;
+                }
+                int eq = pair.lastIndexOf('=');
+                double factor;
+                try {
+                    factor = eq < 0 ? 0 : Double.parseDouble(pair.substring(eq + 1).trim());
+                } catch (NumberFormatException x) {
+                    factor = 0;
+                }
+                if (eq <= 0 || !(factor > 0)) {
+                    throw new IllegalArgumentException("Expected label=factor with a positive factor but got " + pair.trim());
+                }
+                r.put(pair.substring(0, eq).trim(), factor);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return the factor learned for each label from the previous builds
+     */
+    @NonNull
+    static Map<String, Double> learn(@NonNull Run<?, ?> build) {
+        Map<String, long[]> sums = new HashMap<>();
+        long actual = 0, predicted = 0;
+        Run<?, ?> b = build.getPreviousBuild();
+        for (int i = 0; i < NUMBER_OF_BUILDS_TO_SEARCH && b != null; i++, b = b.getPreviousBuild()) {
+            SplitReport report = b.getAction(SplitReport.class);
+            if (report == null) {
+                continue;
+            }
+            for (SplitReport.Plan plan : report.getPlans()) {
+                for (int split = 0; split < plan.getSize(); split++) {
+                    long a = plan.getActual(split);
+                    long p = plan.getBase(split);
+                    if (a < 0 || p <= 0) {
+                        continue;
+                    }
+                    actual += a;
+                    predicted += p;
+                    for (String label : plan.getLearnedLabels(split)) {
+                        long[] sum = sums.computeIfAbsent(label, k -> new long[2]);
+                        sum[0] += a;
+                        sum[1] += p;
+                    }
+                }
+            }
+        }
+        Map<String, Double> factors = new HashMap<>();
+        if (actual > 0 && predicted > 0) {
+            double overall = (double) actual / predicted;
+            for (Map.Entry<String, long[]> e : sums.entrySet()) {
+                factors.put(e.getKey(), (double) e.getValue()[0] / e.getValue()[1] / overall);
+            }
+        }
+        return factors;
+    }
+
+    /**
+     * @return how many times longer than predicted tests take on the agents of the label of each split, 1 if unknown
+     */
+    @NonNull
+    static double[] slowdowns(@NonNull Run<?, ?> build, @NonNull SplitConfiguration configuration, int splits, @NonNull TaskListener listener) {
+        double[] slowdowns = new double[splits];
+        Map<String, Double> learned = learn(build);
+        Map<String, Double> given = configuration.speeds == null ? Map.of() : configuration.speeds;
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < splits; i++) {
+            String label = configuration.getLabel(i);
+            Double factor = given.get(label);
+            String origin = "given";
+            if (factor == null) {
+                factor = learned.get(label);
+                origin = "learned";
+            }
+            if (factor == null) {
+                factor = 1.0;
+                origin = "unknown";
+            }
+            slowdowns[i] = factor;
+            b.append(i == 0 ? "" : ", ").append(String.format("%d on %s x%.2f (%s)", i, label, factor, origin));
+        }
+        listener.getLogger().println("Speed of the agents of each split: " + b);
+        return slowdowns;
+    }
+
+    private AgentSpeeds() {}
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Claims the next batch of tests queued by {@link TestQueueStep}.
+ * Returns an {@link InclusionExclusionPattern}, or null once the queue is empty.
+ */
+public final class ClaimTestsStep extends Step {
+
+    private String name = TestQueueStep.DEFAULT_NAME;
+
+    @DataBoundConstructor
+    public ClaimTestsStep() {}
+
+    public String getName() {
+        return name;
+    }
+
+    @DataBoundSetter
+    public void setName(String name) {
+        this.name = Util.fixEmpty(name) == null ? TestQueueStep.DEFAULT_NAME : name;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, this);
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(TaskListener.class, Run.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "claimTests";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Claim Queued Tests";
+        }
+    }
+
+    private static final class Execution extends SynchronousStepExecution<InclusionExclusionPattern> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ClaimTestsStep step;
+
+        Execution(StepContext context, ClaimTestsStep step) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected InclusionExclusionPattern run() throws Exception {
+            StepContext context = getContext();
+            Run<?, ?> build = context.get(Run.class);
+            TaskListener listener = context.get(TaskListener.class);
+            return TestQueueAction.of(build).claim(build, step.name, listener);
+        }
+
+    }
+
+}
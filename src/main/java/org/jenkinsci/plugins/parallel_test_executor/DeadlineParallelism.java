@@ -0,0 +1,178 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH;
+import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.RESULTS_OF_BUILDS_TO_CONSIDER;
+
+/**
+ * Uses the smallest number of batches whose planned packing finishes within a deadline,
+ * taking into account a fixed overhead paid by each batch before its tests start.
+ */
+public class DeadlineParallelism extends Parallelism {
+    private static final int OVERHEAD_SAMPLES = 5;
+
+    public final int mins;
+
+    private Integer overheadSeconds;
+
+    @DataBoundConstructor
+    public DeadlineParallelism(int mins) {
+        this.mins = mins;
+    }
+
+    public Integer getOverheadSeconds() {
+        return overheadSeconds;
+    }
+
+    /**
+     * @param overheadSeconds time spent by each batch before running tests; if unset, it is estimated from previous builds
+     */
+    @DataBoundSetter
+    public void setOverheadSeconds(Integer overheadSeconds) {
+        this.overheadSeconds = overheadSeconds == null ? null : Math.max(0, overheadSeconds);
+    }
+
+    @Override
+    public int calculate(List<TestEntity> tests) {
+        long total = 0;
+        for (TestEntity test : tests) {
+            total += test.micros;
+        }
+        long budget = TimeUnit.MINUTES.toMicros(mins) - TimeUnit.SECONDS.toMicros(overheadSeconds == null ? 0 : overheadSeconds);
+        return budget <= 0 ? tests.size() : (int) ((total + budget - 1) / budget);
+    }
+
+    @Override
+    int calculate(List<TestEntity> sorted, SplitStrategy strategy, Run<?, ?> build, TaskListener listener) {
+        if (sorted.isEmpty()) {
+            return 1;
+        }
+        long overhead = overheadSeconds != null ? TimeUnit.SECONDS.toMillis(overheadSeconds) : learnOverhead(build, listener);
+        long deadline = TimeUnit.MINUTES.toMillis(mins);
+        long budget = TimeUnit.MILLISECONDS.toMicros(deadline - overhead);
+        double deviations = strategy.getDeviations();
+        long longest = 0;
+        long total = 0;
+        for (TestEntity test : sorted) {
+            longest = Math.max(longest, Knapsack.predict(test.micros, test.variance, deviations));
+            total += test.micros;
+        }
+        if (overhead >= deadline) {
+            listener.getLogger().printf("Deadline of %d minutes cannot be met: %dms overhead per batch leaves no time for tests%n",
+                    mins, overhead);
+            budget = Math.max(1, longest);
+        } else if (longest > budget) {
+            listener.getLogger().printf("Deadline of %d minutes cannot be met: %s takes %dms alone, with %dms overhead per batch%n",
+                    mins, sorted.get(0).getKey(), longest / 1000, overhead);
+            budget = longest;
+        }
+        // Fewer batches than this cannot fit, more may be needed depending on how the tests pack.
+        int low = (int) Math.max(1, Math.min(sorted.size(), (total + budget - 1) / budget));
+        int high = low;
+        int step = 1;
+        while (makespan(sorted, high, deviations) > budget) {
+            if (high == sorted.size()) {
+                listener.getLogger().printf("Deadline of %d minutes cannot be met even with %d batches%n", mins, high);
+                return high;
+            }
+            low = high + 1;
+            high = (int) Math.min(sorted.size(), (long) high + step);
+            step *= 2;
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (makespan(sorted, mid, deviations) > budget) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        listener.getLogger().printf("Using %d batches to finish within %d minutes, with %dms overhead per batch%n", high, mins, overhead);
+        return high;
+    }
+
+    /**
+     * Packs the tests greedily into this number of trial knapsacks.
+     * This is an estimate: the packing eventually used may differ, as other strategies pack differently
+     * and tests may then be moved to keep groups, risky tests or resources apart, or to keep setup together.
+     */
+    private static long makespan(List<TestEntity> sorted, int n, double deviations) {
+        List<Knapsack> knapsacks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            knapsacks.add(new Knapsack());
+        }
+        GreedySplitStrategy.pack(sorted, knapsacks, deviations);
+        long max = 0;
+        for (Knapsack k : knapsacks) {
+            max = Math.max(max, k.predicted(deviations));
+        }
+        for (TestEntity test : sorted) {
+            test.knapsack = null;
+        }
+        return max;
+    }
+
+    /**
+     * Estimates the overhead of a batch from the {@link SplitReport} of previous builds, as the median, over builds,
+     * of the median difference between the actual duration of each split and the duration predicted from its tests.
+     * The actual duration of a split runs from the start of its agent, so that time waiting for an agent
+     * and stages outside of the splits, such as compilation, do not count.
+     */
+    static long learnOverhead(Run<?, ?> build, TaskListener listener) {
+        List<Long> samples = new ArrayList<>();
+        Run<?, ?> b = build.getPreviousBuild();
+        for (int i = 0; i < NUMBER_OF_BUILDS_TO_SEARCH && b != null && samples.size() < OVERHEAD_SAMPLES; i++, b = b.getPreviousBuild()) {
+            if (!RESULTS_OF_BUILDS_TO_CONSIDER.contains(b.getResult()) || b.isBuilding()) {
+                continue;
+            }
+            SplitReport report = b.getAction(SplitReport.class);
+            if (report == null) {
+                continue;
+            }
+            List<Long> splits = new ArrayList<>();
+            for (SplitReport.Plan plan : report.getPlans()) {
+                for (int split = 0; split < plan.getSize(); split++) {
+                    if (plan.getActual(split) >= 0) {
+                        splits.add(Math.max(0, plan.getActual(split) - plan.getPredicted(split)));
+                    }
+                }
+            }
+            if (!splits.isEmpty()) {
+                samples.add(median(splits));
+            }
+        }
+        if (samples.isEmpty()) {
+            listener.getLogger().println("No previous build to estimate the overhead per batch from, assuming none; set the overhead to account for it");
+            return 0;
+        }
+        long overhead = median(samples);
+        listener.getLogger().printf("Estimated an overhead of %dms per batch from %d previous builds%n", overhead, samples.size());
+        return overhead;
+    }
+
+    private static long median(List<Long> samples) {
+        Collections.sort(samples);
+        return samples.get(samples.size() / 2);
+    }
+
+    @Symbol("deadline")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<Parallelism> {
+        @Override
+        public String getDisplayName() {
+            return "Fewest batches finishing within a deadline (minutes)";
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Packs tests using the Karmarkar-Karp largest differencing method, then refines the result
+ * by moving and swapping tests between the heaviest knapsack and lighter ones for a bounded time.
+ */
+public class DifferencingSplitStrategy extends SplitStrategy {
+
+    /**
+     * Bound on tests times knapsacks held as partial partitions; tests beyond it are added greedily.
+     */
+    private static final int MAX_SLOTS = SystemProperties.getInteger(DifferencingSplitStrategy.class.getName() + ".maxSlots", 1_000_000);
+
+    private static final Comparator<TestEntity> BY_DURATION = Comparator.comparingLong(TestEntity::getDuration);
+
+    private int localSearchMillis = 500;
+
+    @DataBoundConstructor
+    public DifferencingSplitStrategy() {}
+
+    public int getLocalSearchMillis() {
+        return localSearchMillis;
+    }
+
+    /**
+     * @param localSearchMillis time budget for refining the partition; 0 disables refinement
+     */
+    @DataBoundSetter
+    public void setLocalSearchMillis(int localSearchMillis) {
+        this.localSearchMillis = Math.max(0, localSearchMillis);
+    }
+
+    @Override
+    void pack(List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        int m = Math.min(sorted.size(), Math.max(1, MAX_SLOTS / knapsacks.size()));
+        double deviations = getDeviations();
+        difference(sorted.subList(0, m), knapsacks);
+        GreedySplitStrategy.pack(sorted.subList(m, sorted.size()), knapsacks, deviations);
+        if (localSearchMillis > 0) {
+            improve(sorted, knapsacks, deviations, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(localSearchMillis));
+        }
+    }
+
+    /**
+     * Repeatedly replaces the two partitions with the largest spread by their combination,
+     * pairing the heaviest subset of one with the lightest of the other.
+     */
+    private static void difference(List<TestEntity> tests, List<Knapsack> knapsacks) {
+        int n = tests.size();
+        if (n == 0) {
+            return;
+        }
+        int k = knapsacks.size();
+        int[] next = new int[n];
+        Arrays.fill(next, -1);
+        PriorityQueue<Partition> q = new PriorityQueue<>(n);
+        for (int i = 0; i < n; i++) {
+            q.add(new Partition(k, i, tests.get(i).micros));
+        }
+        while (q.size() > 1) {
+            q.add(q.poll().merge(q.poll(), next));
+        }
+        Partition p = q.poll();
+        for (int j = 0; j < k; j++) {
+            Knapsack knapsack = knapsacks.get(j);
+            for (int i = p.heads[j]; i != -1; i = next[i]) {
+                knapsack.add(tests.get(i));
+            }
+        }
+    }
+
+    /**
+     * Moves a test out of the heaviest knapsack, or swaps it for a shorter one, as long as this lowers the maximum.
+     * Knapsacks are compared by their predicted duration, so with a nonzero {@code deviations} moving volatile tests
+     * out of the heaviest knapsack also counts.
+     */
+    private static void improve(List<TestEntity> tests, List<Knapsack> knapsacks, double deviations, long deadline) {
+        int k = knapsacks.size();
+        if (k < 2) {
+            return;
+        }
+        Map<Knapsack, List<TestEntity>> byKnapsack = new IdentityHashMap<>();
+        for (Knapsack knapsack : knapsacks) {
+            byKnapsack.put(knapsack, new ArrayList<>());
+        }
+        for (TestEntity test : tests) {
+            byKnapsack.get(test.knapsack).add(test);
+        }
+        List<List<TestEntity>> contents = new ArrayList<>(k);
+        for (Knapsack knapsack : knapsacks) {
+            List<TestEntity> c = byKnapsack.get(knapsack);
+            c.sort(BY_DURATION);
+            contents.add(c);
+        }
+        Integer[] byLoad = new Integer[k];
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < k; i++) {
+                byLoad[i] = i;
+            }
+            Arrays.sort(byLoad, Comparator.comparingLong(i -> knapsacks.get(i).predicted(deviations)));
+            int heaviest = byLoad[k - 1];
+            boolean improved = false;
+            for (int j = 0; j < k - 1 && !improved; j++) {
+                if (knapsacks.get(heaviest).predicted(deviations) - knapsacks.get(byLoad[j]).predicted(deviations) <= 1) {
+                    break;
+                }
+                improved = exchange(knapsacks, contents, heaviest, byLoad[j], deviations);
+            }
+            if (!improved) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Performs the move or swap from {@code from} to {@code to} that brings both predicted durations closest to each other.
+     * @return false if no exchange reduces the predicted duration of {@code from} without making {@code to} at least as long
+     */
+    private static boolean exchange(List<Knapsack> knapsacks, List<List<TestEntity>> contents, int from, int to, double deviations) {
+        Knapsack heavyKnapsack = knapsacks.get(from);
+        Knapsack lightKnapsack = knapsacks.get(to);
+        List<TestEntity> heavy = contents.get(from);
+        List<TestEntity> light = contents.get(to);
+        long half = (heavyKnapsack.total - lightKnapsack.total) / 2;
+        TestEntity bestOut = null, bestIn = null;
+        long bestLoad = heavyKnapsack.predicted(deviations);
+        for (TestEntity out : heavy) {
+            if (out.micros == 0 && out.variance == 0) {
+                continue;
+            }
+            long load = load(heavyKnapsack, lightKnapsack, out.micros, out.variance, deviations);
+            if (load < bestLoad) {
+                bestOut = out;
+                bestIn = null;
+                bestLoad = load;
+            }
+            int idx = indexOf(light, out.micros - half);
+            for (int c = Math.max(0, idx - 1); c <= Math.min(light.size() - 1, idx); c++) {
+                TestEntity in = light.get(c);
+                load = load(heavyKnapsack, lightKnapsack, out.micros - in.micros, out.variance - in.variance, deviations);
+                if (load < bestLoad) {
+                    bestOut = out;
+                    bestIn = in;
+                    bestLoad = load;
+                }
+            }
+        }
+        if (bestOut == null) {
+            return false;
+        }
+        transfer(bestOut, heavyKnapsack, heavy, lightKnapsack, light);
+        if (bestIn != null) {
+            transfer(bestIn, lightKnapsack, light, heavyKnapsack, heavy);
+        }
+        return true;
+    }
+
+    /**
+     * @return the longer predicted duration of both knapsacks after moving the given amount from one to the other
+     */
+    private static long load(Knapsack from, Knapsack to, long duration, long variance, double deviations) {
+        return Math.max(Knapsack.predict(from.total - duration, from.variance - variance, deviations),
+                Knapsack.predict(to.total + duration, to.variance + variance, deviations));
+    }
+
+    private static void transfer(TestEntity test, Knapsack from, List<TestEntity> fromContents, Knapsack to, List<TestEntity> toContents) {
+        from.remove(test);
+        fromContents.remove(test);
+        to.add(test);
+        int idx = Collections.binarySearch(toContents, test, BY_DURATION);
+        toContents.add(idx < 0 ? -idx - 1 : idx, test);
+    }
+
+    /**
+     * @return index of the first test in the ascending list that is at least the given duration
+     */
+    private static int indexOf(List<TestEntity> ascending, long duration) {
+        int lo = 0, hi = ascending.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ascending.get(mid).micros < duration) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * A tuple of subsets of tests in the descending order of their sums, members being chained through a shared array.
+     */
+    private static final class Partition implements Comparable<Partition> {
+        private final long[] sums;
+        private final int[] heads;
+        private final int[] tails;
+
+        Partition(int k, int test, long duration) {
+            this(new long[k], new int[k], new int[k]);
+            Arrays.fill(heads, -1);
+            Arrays.fill(tails, -1);
+            sums[0] = duration;
+            heads[0] = test;
+            tails[0] = test;
+        }
+
+        private Partition(long[] sums, int[] heads, int[] tails) {
+            this.sums = sums;
+            this.heads = heads;
+            this.tails = tails;
+        }
+
+        long spread() {
+            return sums[0] - sums[sums.length - 1];
+        }
+
+        Partition merge(Partition that, int[] next) {
+            int k = sums.length;
+            long[] s = new long[k];
+            int[] h = new int[k];
+            int[] t = new int[k];
+            for (int j = 0; j < k; j++) {
+                int o = k - 1 - j;
+                s[j] = sums[j] + that.sums[o];
+                if (heads[j] == -1) {
+                    h[j] = that.heads[o];
+                    t[j] = that.tails[o];
+                } else {
+                    h[j] = heads[j];
+                    if (that.heads[o] == -1) {
+                        t[j] = tails[j];
+                    } else {
+                        next[tails[j]] = that.heads[o];
+                        t[j] = that.tails[o];
+                    }
+                }
+            }
+            Integer[] order = new Integer[k];
+            for (int j = 0; j < k; j++) {
+                order[j] = j;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(s[b], s[a]));
+            Partition merged = new Partition(new long[k], new int[k], new int[k]);
+            for (int j = 0; j < k; j++) {
+                merged.sums[j] = s[order[j]];
+                merged.heads[j] = h[order[j]];
+                merged.tails[j] = t[order[j]];
+            }
+            return merged;
+        }
+
+        @Override
+        public int compareTo(Partition that) {
+            // largest spread first
+            return Long.compare(that.spread(), this.spread());
+        }
+    }
+
+    @Symbol("differencing")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<SplitStrategy> {
+        @Override
+        public String getDisplayName() {
+            return "Largest differencing with local search";
+        }
+    }
+}
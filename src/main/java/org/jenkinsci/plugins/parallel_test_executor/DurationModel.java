@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.model.AbstractDescribableImpl;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strategy that determines how test durations recorded in previous builds are turned into the duration used for planning.
+ */
+public abstract class DurationModel extends AbstractDescribableImpl<DurationModel> {
+    /*package*/ DurationModel() {}
+
+    /**
+     * @return how many reference builds should be loaded
+     */
+    abstract int getBuilds();
+
+    /**
+     * Combines the tests recorded in each reference build into one estimate per test.
+     *
+     * @param builds tests of each reference build keyed by {@link TestEntity#getKey()}, newest build first; never empty
+     * @return a sorted map of tests keyed by {@link TestEntity#getKey()}
+     */
+    abstract Map<String, TestEntity> combine(List<Map<String, TestEntity>> builds);
+
+    /**
+     * @return the default implementation, if none is defined
+     */
+    public static DurationModel getDefault() {
+        return new LatestBuildDurations();
+    }
+
+    public static DurationModel fixDefault(DurationModel durationModel) {
+        if (durationModel == null) {
+            return null;
+        }
+        return LatestBuildDurations.class.equals(durationModel.getClass()) ? null : durationModel;
+    }
+}
@@ -0,0 +1,134 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.List;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Puts each test into the knapsack that is currently the lightest, heavier tests first.
+ */
+public class GreedySplitStrategy extends SplitStrategy {
+
+    @DataBoundConstructor
+    public GreedySplitStrategy() {}
+
+    @Override
+    void pack(List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        pack(sorted, knapsacks, getDeviations());
+    }
+
+    /**
+     * Packs tests longest first, in microseconds so that tests shorter than a millisecond are not all put together.
+     * <p>
+     * This packing problem is a NP-complete problem, so we solve
+     * this simply by a greedy algorithm. We pack heavier items first,
+     * and the result should be of roughly equal size.
+     * Among knapsacks of the same duration, the one with the fewest tests is picked.
+     * </p>
+     * <p>
+     * Only a heap over the knapsacks is allocated, so that suites of millions of tests are planned
+     * without copying anything per test.
+     * </p>
+     *
+     * @param sorted tests longest first
+     * @param knapsacks knapsacks to add the tests to, possibly holding tests already
+     */
+    static void pack(List<TestEntity> sorted, List<Knapsack> knapsacks, double deviations) {
+        for (Knapsack k : knapsacks) {
+            if (k.slowdown != 1) {
+                packBySpeed(sorted, knapsacks, deviations);
+                return;
+            }
+        }
+        int splits = knapsacks.size();
+        Knapsack[] heap = knapsacks.toArray(new Knapsack[splits]);
+        long[] keys = new long[splits];
+        int[] order = new int[splits];
+        for (int k = 0; k < splits; k++) {
+            keys[k] = heap[k].predicted(deviations);
+            order[k] = k;
+        }
+        for (int i = splits / 2 - 1; i >= 0; i--) {
+            siftDown(heap, keys, order, i);
+        }
+        for (TestEntity test : sorted) {
+            // the lightest knapsack only gets heavier, so it just needs to sink to its place
+            heap[0].add(test);
+            keys[0] = heap[0].predicted(deviations);
+            siftDown(heap, keys, order, 0);
+        }
+    }
+
+    /**
+     * Packs tests into knapsacks run by agents of different speeds, putting each test into the knapsack
+     * which would then finish first, so that slower agents get less work.
+     * This looks at every knapsack for every test, which is fine for the number of agents of a build.
+     */
+    private static void packBySpeed(List<TestEntity> sorted, List<Knapsack> knapsacks, double deviations) {
+        for (TestEntity test : sorted) {
+            Knapsack best = null;
+            double bestFinish = Double.MAX_VALUE;
+            for (Knapsack k : knapsacks) {
+                double finish = Knapsack.predict(k.total + test.micros, k.variance + test.variance, deviations) * k.slowdown;
+                if (finish < bestFinish || finish == bestFinish && k.count < best.count) {
+                    best = k;
+                    bestFinish = finish;
+                }
+            }
+            best.add(test);
+        }
+    }
+
+    /**
+     * Moves the knapsack at {@code i} down the heap, comparing by {@code keys}, then by number of tests,
+     * then by position among the knapsacks in {@code order}, all kept alongside the heap.
+     */
+    private static void siftDown(Knapsack[] heap, long[] keys, int[] order, int i) {
+        int size = heap.length;
+        Knapsack k = heap[i];
+        long key = keys[i];
+        int position = order[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && lighter(heap, keys, order, child + 1, child)) {
+                child++;
+            }
+            if (keys[child] > key || keys[child] == key && (heap[child].count > k.count
+                    || heap[child].count == k.count && order[child] > position)) {
+                break;
+            }
+            heap[i] = heap[child];
+            keys[i] = keys[child];
+            order[i] = order[child];
+            i = child;
+        }
+        heap[i] = k;
+        keys[i] = key;
+        order[i] = position;
+    }
+
+    private static boolean lighter(Knapsack[] heap, long[] keys, int[] order, int a, int b) {
+        if (keys[a] != keys[b]) {
+            return keys[a] < keys[b];
+        }
+        if (heap[a].count != heap[b].count) {
+            return heap[a].count < heap[b].count;
+        }
+        return order[a] < order[b];
+    }
+
+    @Symbol("greedy")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<SplitStrategy> {
+        @Override
+        public String getDisplayName() {
+            return "Longest tests first into the lightest batch";
+        }
+    }
+}
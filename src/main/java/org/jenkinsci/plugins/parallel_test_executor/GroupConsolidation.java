@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+/**
+ * Moves the tests of a {@linkplain TestEntity#getGroup() group} spread over several splits into the split that
+ * already holds most of it, as long as the longest split does not grow beyond a tolerance,
+ * so that the group can be designated by a single pattern.
+ */
+final class GroupConsolidation {
+
+    /**
+     * @param sorted tests, already packed into the knapsacks, in the descending order of the duration
+     * @param tolerance percentage by which the predicted duration of the longest knapsack may grow
+     * @param deviations how many standard deviations to add to the mean when predicting durations
+     * @return the number of groups moved
+     */
+    static int consolidate(List<TestEntity> sorted, List<Knapsack> knapsacks, int tolerance, double deviations) {
+        long makespan = 0;
+        for (Knapsack k : knapsacks) {
+            makespan = Math.max(makespan, k.predicted(deviations));
+        }
+        long limit = makespan + makespan * tolerance / 100;
+        Map<String, List<TestEntity>> groups = new LinkedHashMap<>();
+        for (TestEntity test : sorted) {
+            String group = test.getGroup();
+            if (group != null) {
+                groups.computeIfAbsent(group, g -> new ArrayList<>()).add(test);
+            }
+        }
+        int moved = 0;
+        for (List<TestEntity> members : groups.values()) {
+            Map<Knapsack, Long> shares = new IdentityHashMap<>();
+            for (TestEntity test : members) {
+                shares.merge(test.knapsack, test.micros, Long::sum);
+            }
+            if (shares.size() < 2) {
+                continue;
+            }
+            Knapsack target = null;
+            for (Map.Entry<Knapsack, Long> share : shares.entrySet()) {
+                if (target == null || share.getValue() > shares.get(target)) {
+                    target = share.getKey();
+                }
+            }
+            long total = target.total;
+            long variance = target.variance;
+            for (TestEntity test : members) {
+                if (test.knapsack != target) {
+                    total += test.micros;
+                    variance += test.variance;
+                }
+            }
+            // other knapsacks only shrink, so the makespan stays within the limit if the target does
+            if (Knapsack.predict(total, variance, deviations) > limit) {
+                continue;
+            }
+            for (TestEntity test : members) {
+                if (test.knapsack != target) {
+                    test.knapsack.remove(test);
+                    target.add(test);
+                }
+            }
+            moved++;
+        }
+        return moved;
+    }
+
+    private GroupConsolidation() {}
+}
@@ -10,6 +10,8 @@ import java.util.List;
  * A list of file name patterns to include or exclude
  */
 public class InclusionExclusionPattern implements Serializable {
+    private static final long serialVersionUID = 94593298447281654L;
+
     @Whitelisted
     public boolean isIncludes() {
         return includes;
@@ -20,12 +22,43 @@ public class InclusionExclusionPattern implements Serializable {
         return Collections.unmodifiableList(list);
     }
 
+    /**
+     * @return the tests of this split in the order they should be run, if requested; empty otherwise
+     */
+    @Whitelisted
+    public List<String> getOrder() {
+        return order == null ? Collections.emptyList() : Collections.unmodifiableList(order);
+    }
+
+    /**
+     * @return the label of the agents this split is meant to run on, if labels were given
+     */
+    @Whitelisted
+    public String getLabel() {
+        return label;
+    }
+
     private final boolean includes;
     private final List<String> list;
+    /**
+     * Null when deserialized from an older version.
+     */
+    private final List<String> order;
+    private final String label;
 
     InclusionExclusionPattern(List<String> list, boolean includes) {
+        this(list, includes, Collections.emptyList());
+    }
+
+    InclusionExclusionPattern(List<String> list, boolean includes, List<String> order) {
+        this(list, includes, order, null);
+    }
+
+    InclusionExclusionPattern(List<String> list, boolean includes, List<String> order, String label) {
         this.list = list;
         this.includes = includes;
+        this.order = order;
+        this.label = label;
     }
 
     @Override
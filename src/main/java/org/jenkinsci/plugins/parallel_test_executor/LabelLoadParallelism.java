@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Descriptor;
+import hudson.model.Label;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+import hudson.slaves.NodeProvisioner;
+import java.util.List;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Uses as many batches as there are executors able to start them right away on a label, up to a requested number.
+ */
+public class LabelLoadParallelism extends Parallelism {
+    public final String label;
+
+    public final int size;
+
+    private int minimum = 1;
+
+    private int cloudExecutors;
+
+    @DataBoundConstructor
+    public LabelLoadParallelism(String label, int size) {
+        this.label = Util.fixEmptyAndTrim(label);
+        this.size = size;
+    }
+
+    public int getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * @param minimum number of batches to use even if fewer executors are available
+     */
+    @DataBoundSetter
+    public void setMinimum(int minimum) {
+        this.minimum = Math.max(1, minimum);
+    }
+
+    public int getCloudExecutors() {
+        return cloudExecutors;
+    }
+
+    /**
+     * @param cloudExecutors number of executors assumed to be provisioned on demand when a cloud can provision the label
+     */
+    @DataBoundSetter
+    public void setCloudExecutors(int cloudExecutors) {
+        this.cloudExecutors = Math.max(0, cloudExecutors);
+    }
+
+    @Override
+    public int calculate(List<TestEntity> tests) {
+        int available = available();
+        int n = Math.max(Math.min(minimum, size), Math.min(size, available));
+        // Don't split into 5 buckets if we only have 2 tests etc
+        return tests == null ? n : Math.min(n, tests.size());
+    }
+
+    @Override
+    int calculate(List<TestEntity> sorted, SplitStrategy strategy, Run<?, ?> build, TaskListener listener) {
+        int n = calculate(sorted);
+        listener.getLogger().printf("%d executors available for %s, using %d of %d requested batches%n", available(), label, n, size);
+        return n;
+    }
+
+    /**
+     * @return the number of executors of the label that are idle or being provisioned, minus those claimed by queued items
+     */
+    int available() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return size;
+        }
+        Label l = jenkins.getLabel(label);
+        if (l == null) {
+            return size;
+        }
+        int available = l.getIdleExecutors();
+        for (NodeProvisioner.PlannedNode planned : l.nodeProvisioner.getPendingLaunches()) {
+            available += planned.numExecutors;
+        }
+        if (cloudExecutors > 0) {
+            for (Cloud cloud : l.getClouds()) {
+                if (cloud.canProvision(new Cloud.CloudState(l, 0))) {
+                    available += cloudExecutors;
+                    break;
+                }
+            }
+        }
+        available -= jenkins.getQueue().countBuildableItemsFor(l);
+        return Math.max(0, available);
+    }
+
+    @Symbol("labelLoad")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<Parallelism> {
+        @Override
+        public String getDisplayName() {
+            return "Number of batches that can start right away on a label";
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Uses the durations recorded in the most recent reference build as is.
+ */
+public class LatestBuildDurations extends DurationModel {
+
+    @DataBoundConstructor
+    public LatestBuildDurations() {}
+
+    @Override
+    int getBuilds() {
+        return 1;
+    }
+
+    @Override
+    Map<String, TestEntity> combine(List<Map<String, TestEntity>> builds) {
+        return builds.get(0);
+    }
+
+    @Symbol("latest")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<DurationModel> {
+        @Override
+        public String getDisplayName() {
+            return "Durations from the last reference build";
+        }
+    }
+}
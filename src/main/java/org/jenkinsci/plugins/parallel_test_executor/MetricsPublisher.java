@@ -0,0 +1,31 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import jenkins.metrics.api.Metrics;
+import org.jenkinsci.plugins.variant.OptionalExtension;
+
+/**
+ * Publishes {@link SplitMetrics} to the registry of the Metrics plugin, as histograms of the time spent in each phase
+ * and of the size of the plans, and counters of builds skipped and of reference builds read with or without their index.
+ */
+@OptionalExtension(requirePlugins = "metrics")
+public class MetricsPublisher extends SplitMetrics.Publisher {
+
+    private static final String PREFIX = "parallel-test-executor.split";
+
+    @Override
+    public void publish(SplitMetrics metrics) {
+        MetricRegistry registry = Metrics.metricRegistry();
+        for (SplitMetrics.Phase phase : SplitMetrics.Phase.values()) {
+            registry.histogram(MetricRegistry.name(PREFIX, phase.name().toLowerCase(Locale.ENGLISH), "millis"))
+                    .update(TimeUnit.NANOSECONDS.toMillis(metrics.getNanos(phase)));
+        }
+        registry.histogram(MetricRegistry.name(PREFIX, "tests")).update(metrics.getEntities());
+        registry.histogram(MetricRegistry.name(PREFIX, "pattern-bytes")).update(metrics.getPatternBytes());
+        registry.counter(MetricRegistry.name(PREFIX, "builds-skipped")).inc(metrics.getBuildsSkipped());
+        registry.counter(MetricRegistry.name(PREFIX, "index", "hits")).inc(metrics.getIndexHits());
+        registry.counter(MetricRegistry.name(PREFIX, "index", "misses")).inc(metrics.getIndexMisses());
+    }
+}
@@ -0,0 +1,64 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.util.List;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+/**
+ * Approximations used to predict split durations, assuming test durations are independent and normally distributed.
+ */
+final class NormalDistribution {
+
+    /**
+     * @return the probability that a standard normal variable is at most {@code x}
+     */
+    static double cdf(double x) {
+        // Abramowitz and Stegun 7.1.26, absolute error below 1.5e-7
+        double z = Math.abs(x) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * z);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-z * z);
+        return x >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+
+    /**
+     * @return the value a standard normal variable stays below with probability {@code p}
+     */
+    static double quantile(double p) {
+        double lo = -10, hi = 10;
+        for (int i = 0; i < 64; i++) {
+            double mid = (lo + hi) / 2;
+            if (cdf(mid) < p) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * @return the duration in microseconds within which all knapsacks complete with probability {@code p}
+     */
+    static long makespan(List<Knapsack> knapsacks, double p) {
+        double lo = 0, hi = 0;
+        for (Knapsack k : knapsacks) {
+            double sd = Math.sqrt(k.variance) * 1000;
+            lo = Math.max(lo, k.total - 10 * sd);
+            hi = Math.max(hi, k.total + 10 * sd);
+        }
+        for (int i = 0; i < 64 && hi - lo > 0.5; i++) {
+            double mid = (lo + hi) / 2;
+            double all = 1;
+            for (Knapsack k : knapsacks) {
+                all *= k.variance == 0 ? (mid >= k.total ? 1 : 0) : cdf((mid - k.total) / (Math.sqrt(k.variance) * 1000));
+            }
+            if (all < p) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return Math.round(hi);
+    }
+
+    private NormalDistribution() {}
+}
@@ -31,8 +31,11 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
 import org.jenkinsci.plugins.variant.OptionalExtension;
@@ -53,10 +56,20 @@ public class ParallelTestExecutor extends Builder {
     private final String testJob;
     private final String patternFile;
     private String includesPatternFile;
+    private String runOrderFile;
     private final String testReportFiles;
     private final boolean doNotArchiveTestResults;
     private final List<AbstractBuildParameters> parameters;
     private TestMode testMode;
+    private SplitStrategy strategy;
+    private DurationModel durationModel;
+    private boolean compressPatterns;
+    private int groupTolerance;
+    private boolean failFast;
+    private RunOrder runOrder;
+    private boolean discoverNewTests;
+    private String resourceFile;
+    private String resourceBudget;
 
     @DataBoundConstructor
     public ParallelTestExecutor(Parallelism parallelism, String testJob, String patternFile, String testReportFiles, boolean archiveTestResults, List<AbstractBuildParameters> parameters) {
@@ -90,6 +103,15 @@ public class ParallelTestExecutor extends Builder {
         this.includesPatternFile = Util.fixEmpty(includesPatternFile);
     }
 
+    public String getRunOrderFile() {
+        return runOrderFile;
+    }
+
+    @DataBoundSetter
+    public void setRunOrderFile(String runOrderFile) {
+        this.runOrderFile = Util.fixEmpty(runOrderFile);
+    }
+
     public String getTestReportFiles() {
         return testReportFiles;
     }
@@ -108,6 +130,109 @@ public class ParallelTestExecutor extends Builder {
         this.testMode = testMode;
     }
 
+    @SuppressWarnings("unused") // jetty
+    public SplitStrategy getStrategy() {
+        return SplitStrategy.fixDefault(strategy);
+    }
+
+    @DataBoundSetter
+    public void setStrategy(SplitStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @SuppressWarnings("unused") // jetty
+    public DurationModel getDurationModel() {
+        return DurationModel.fixDefault(durationModel);
+    }
+
+    @DataBoundSetter
+    public void setDurationModel(DurationModel durationModel) {
+        this.durationModel = durationModel;
+    }
+
+    public boolean isCompressPatterns() {
+        return compressPatterns;
+    }
+
+    @DataBoundSetter
+    public void setCompressPatterns(boolean compressPatterns) {
+        this.compressPatterns = compressPatterns;
+    }
+
+    public int getGroupTolerance() {
+        return groupTolerance;
+    }
+
+    /**
+     * @param groupTolerance percentage by which the longest split may grow so that whole packages or classes stay in one split
+     */
+    @DataBoundSetter
+    public void setGroupTolerance(int groupTolerance) {
+        this.groupTolerance = Math.max(0, groupTolerance);
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast whether to spread tests which failed in the reference builds over the splits and list them first
+     */
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public RunOrder getRunOrder() {
+        return runOrder == null ? RunOrder.NONE : runOrder;
+    }
+
+    /**
+     * @param runOrder order in which the tests of each split should be run
+     */
+    @DataBoundSetter
+    public void setRunOrder(RunOrder runOrder) {
+        this.runOrder = runOrder == RunOrder.NONE ? null : runOrder;
+    }
+
+    public boolean isDiscoverNewTests() {
+        return discoverNewTests;
+    }
+
+    /**
+     * @param discoverNewTests whether to also look for tests in the workspace, to split tests added since the reference builds
+     */
+    @DataBoundSetter
+    public void setDiscoverNewTests(boolean discoverNewTests) {
+        this.discoverNewTests = discoverNewTests;
+    }
+
+    public String getResourceFile() {
+        return resourceFile;
+    }
+
+    /**
+     * @param resourceFile file of the workspace listing the resources needed by tests, such as memory
+     */
+    @DataBoundSetter
+    public void setResourceFile(String resourceFile) {
+        this.resourceFile = Util.fixEmptyAndTrim(resourceFile);
+    }
+
+    public String getResourceBudget() {
+        return resourceBudget;
+    }
+
+    /**
+     * @param resourceBudget {@code name=amount} pairs separated by commas, telling how much of each resource the tests
+     *                       of a split may need in total
+     */
+    @DataBoundSetter
+    public void setResourceBudget(String resourceBudget) {
+        ResourceBudget.parse(resourceBudget);
+        this.resourceBudget = Util.fixEmptyAndTrim(resourceBudget);
+    }
+
     public List<AbstractBuildParameters> getParameters() {
         return parameters;
     }
@@ -118,14 +243,147 @@ public class ParallelTestExecutor extends Builder {
     @SuppressFBWarnings(value="EQ_COMPARETO_USE_OBJECT_EQUALS", justification="We wish to consider knapsacks as distinct items, just sort by size.")
     static class Knapsack implements Comparable<Knapsack> {
         /**
-         * Total duration of all {@link TestEntity}es that are in this knapsack.
+         * Total duration of all {@link TestEntity}es that are in this knapsack, in microseconds.
          */
         long total;
+        /**
+         * Sum of the variances of all {@link TestEntity}es that are in this knapsack, in square milliseconds.
+         */
+        long variance;
+        /**
+         * Number of {@link TestEntity}es that are in this knapsack.
+         */
+        int count;
+        /**
+         * How many times longer than predicted the tests take on the agents this knapsack is run by.
+         */
+        double slowdown = 1;
 
         void add(TestEntity tc) {
             assert tc.knapsack == null;
             tc.knapsack = this;
-            total += tc.duration;
+            total += tc.micros;
+            variance += tc.variance;
+            count++;
+        }
+
+        void remove(TestEntity tc) {
+            assert tc.knapsack == this;
+            tc.knapsack = null;
+            total -= tc.micros;
+            variance -= tc.variance;
+            count--;
+        }
+
+        /**
+         * @param deviations how many standard deviations to add to the mean
+         * @return the duration in microseconds this knapsack is predicted not to exceed with the corresponding probability
+         */
+        long predicted(double deviations) {
+            return predict(total, variance, deviations);
+        }
+
+        /**
+         * @return the total duration, accounting for the speed of the agents this knapsack is run by
+         */
+        long expected() {
+            return Math.round(total * slowdown);
+        }
+
+        /**
+         * @param total a duration in microseconds
+         * @param variance its variance in square milliseconds
+         */
+        static long predict(long total, long variance, double deviations) {
+            return deviations == 0 || variance <= 0 ? total : total + Math.round(deviations * Math.sqrt(variance) * 1000);
+        }
+
+        /**
+         * @return the tests of each knapsack matching the filter, in their order among {@code tests}
+         */
+        static Map<Knapsack, List<TestEntity>> contents(List<Knapsack> knapsacks, List<TestEntity> tests, Predicate<TestEntity> filter) {
+            Map<Knapsack, List<TestEntity>> contents = new IdentityHashMap<>();
+            for (Knapsack k : knapsacks) {
+                contents.put(k, new ArrayList<>());
+            }
+            for (TestEntity test : tests) {
+                if (test.knapsack != null && filter.test(test)) {
+                    contents.get(test.knapsack).add(test);
+                }
+            }
+            return contents;
+        }
+
+        /**
+         * Finds where to move a test to, alone or swapped for a test of the target knapsack,
+         * for the post-passes which move tests out of a knapsack for some other reason than its duration.
+         * Moving the test alone is preferred to a swap, and earlier targets and candidates to later ones, on a tie.
+         *
+         * @param targets knapsacks the test may be moved to
+         * @param candidates tests of each knapsack which may be swapped for the test, as returned by {@link #contents}
+         * @param cost what to minimize, or {@link Long#MAX_VALUE} if the move is not allowed
+         * @return the move of least cost, or null if none is allowed
+         */
+        @CheckForNull
+        static Move move(TestEntity test, Iterable<Knapsack> targets, Map<Knapsack, List<TestEntity>> candidates, double deviations, Cost cost) {
+            Knapsack from = test.knapsack;
+            Move best = null;
+            for (Knapsack to : targets) {
+                if (to == from) {
+                    continue;
+                }
+                best = better(best, to, null, cost.of(Knapsack.predict(from.total - test.micros, from.variance - test.variance, deviations),
+                        Knapsack.predict(to.total + test.micros, to.variance + test.variance, deviations), null));
+                for (TestEntity partner : candidates.get(to)) {
+                    best = better(best, to, partner, cost.of(
+                            Knapsack.predict(from.total - test.micros + partner.micros, from.variance - test.variance + partner.variance, deviations),
+                            Knapsack.predict(to.total + test.micros - partner.micros, to.variance + test.variance - partner.variance, deviations), partner));
+                }
+            }
+            return best;
+        }
+
+        private static Move better(@CheckForNull Move best, Knapsack to, @CheckForNull TestEntity partner, long cost) {
+            return cost != Long.MAX_VALUE && (best == null || cost < best.cost) ? new Move(to, partner, cost) : best;
+        }
+
+        /**
+         * How good moving a test is, from the predicted durations of its knapsack and of the target after the move.
+         */
+        @FunctionalInterface
+        interface Cost {
+            long of(long from, long to, @CheckForNull TestEntity partner);
+        }
+
+        /**
+         * A test moved into another knapsack, possibly swapped for one of its tests.
+         */
+        static final class Move {
+            final Knapsack to;
+            @CheckForNull
+            final TestEntity partner;
+            final long cost;
+
+            Move(Knapsack to, @CheckForNull TestEntity partner, long cost) {
+                this.to = to;
+                this.partner = partner;
+                this.cost = cost;
+            }
+
+            /**
+             * Moves the test, keeping the candidates of {@link #move} up to date.
+             */
+            void apply(TestEntity test, Map<Knapsack, List<TestEntity>> candidates) {
+                Knapsack from = test.knapsack;
+                from.remove(test);
+                if (partner != null) {
+                    to.remove(partner);
+                    from.add(partner);
+                    candidates.get(to).remove(partner);
+                    candidates.get(from).add(partner);
+                }
+                to.add(test);
+            }
         }
 
         public int compareTo(Knapsack that) {
@@ -144,8 +402,19 @@ public class ParallelTestExecutor extends Builder {
         }
         FilePath dir = workspace.child("test-splits");
         dir.deleteRecursive();
-        List<InclusionExclusionPattern> splits = Splitter.findTestSplits(parallelism, testMode, build, listener, includesPatternFile != null,
-                null, build.getWorkspace());
+        SplitConfiguration configuration = new SplitConfiguration(parallelism);
+        configuration.testMode = testMode;
+        configuration.strategy = strategy;
+        configuration.durationModel = durationModel;
+        configuration.compressPatterns = compressPatterns;
+        configuration.groupTolerance = groupTolerance;
+        configuration.failFast = failFast;
+        configuration.runOrder = runOrder;
+        configuration.discoverNewTests = discoverNewTests;
+        configuration.resourceFile = resourceFile;
+        configuration.resourceBudget = ResourceBudget.parse(resourceBudget);
+        configuration.generateInclusions = includesPatternFile != null;
+        List<InclusionExclusionPattern> splits = Splitter.findTestSplits(configuration, build, listener, build.getWorkspace());
         for (int i = 0; i < splits.size(); i++) {
             InclusionExclusionPattern pattern = splits.get(i);
             try (OutputStream os = dir.child("split." + i + "." + (pattern.isIncludes() ? "include" : "exclude") + ".txt").write();
@@ -155,6 +424,15 @@ public class ParallelTestExecutor extends Builder {
                     pw.println(filePattern);
                 }
             }
+            if (!pattern.getOrder().isEmpty()) {
+                try (OutputStream os = dir.child("split." + i + ".order.txt").write();
+                     OutputStreamWriter osw = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+                     PrintWriter pw = new PrintWriter(osw)) {
+                    for (String test : pattern.getOrder()) {
+                        pw.println(test);
+                    }
+                }
+            }
         }
 
         createTriggerBuilder().perform(build, launcher, listener);
@@ -201,6 +479,9 @@ public class ParallelTestExecutor extends Builder {
         if (includesPatternFile != null) {
             parameterBindings.add(new MultipleBinaryFileParameterFactory.ParameterBinding(getIncludesPatternFile(), "test-splits/split.*.include.txt"));
         }
+        if (runOrderFile != null && runOrder != null) {
+            parameterBindings.add(new MultipleBinaryFileParameterFactory.ParameterBinding(getRunOrderFile(), "test-splits/split.*.order.txt"));
+        }
         MultipleBinaryFileParameterFactory factory = new MultipleBinaryFileParameterFactory(parameterBindings);
         BlockableBuildTriggerConfig config = new BlockableBuildTriggerConfig(
                 testJob,
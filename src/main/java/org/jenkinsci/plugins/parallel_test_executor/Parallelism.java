@@ -1,6 +1,8 @@
 package org.jenkinsci.plugins.parallel_test_executor;
 
 import hudson.model.AbstractDescribableImpl;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 
 import java.util.List;
 
@@ -13,4 +15,15 @@ public abstract class Parallelism extends AbstractDescribableImpl<Parallelism> {
     /*package*/ Parallelism() {}
 
     public abstract int calculate(List<TestEntity> tests);
+
+    /**
+     * Variant of {@link #calculate(List)} for strategies which need to try out packings or look at the history of the build.
+     *
+     * @param sorted tests, in the descending order of the duration
+     * @param strategy the strategy that will pack the tests
+     * @param build the build being split
+     */
+    int calculate(List<TestEntity> sorted, SplitStrategy strategy, Run<?, ?> build, TaskListener listener) {
+        return calculate(sorted);
+    }
 }
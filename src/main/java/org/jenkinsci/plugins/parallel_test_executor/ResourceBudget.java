@@ -0,0 +1,194 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+/**
+ * Keeps tests needing much of a resource, such as memory or all the cores, apart: the resources of the tests of a split
+ * must not add up to more than a budget, lest they run out of memory or compete for the CPU.
+ * <p>
+ * The resources of the tests are read from a file, each line holding a test key, or a prefix of keys followed by
+ * {@code *}, then {@code name=amount} pairs separated by commas, such as {@code com.acme.BigTest memory=6144, cpu=4}.
+ * Empty lines and lines starting with {@code #} are ignored.
+ * </p>
+ */
+final class ResourceBudget {
+
+    /**
+     * @param amounts {@code name=amount} pairs separated by commas
+     * @throws IllegalArgumentException if a pair is malformed or an amount negative
+     */
+    @NonNull
+    static Map<String, Long> parse(@CheckForNull String amounts) {
+        Map<String, Long> r = new LinkedHashMap<>();
+        if (amounts != null) {
+            for (String pair : amounts.split(",")) {
+                if (pair.isBlank()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                long amount = -1;
+                if (eq > 0) {
+                    try {
+                        amount = Long.parseLong(pair.substring(eq + 1).trim());
+                    } catch (NumberFormatException x) {
+                        // reported below
+                    }
+                }
+                if (amount < 0) {
+                    throw new IllegalArgumentException("Expected name=amount with a non-negative amount but got " + pair.trim());
+                }
+                r.put(pair.substring(0, eq).trim(), amount);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Sets the resources of the tests listed in a file.
+     *
+     * @param text contents of the file
+     * @return the number of tests which need resources
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    static int tag(List<TestEntity> tests, String text) {
+        Map<String, Map<String, Long>> exact = new HashMap<>();
+        Map<String, Map<String, Long>> prefixes = new HashMap<>();
+        for (String line : text.split("\r?\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] keyAndAmounts = line.split("\\s+", 2);
+            Map<String, Long> amounts = parse(keyAndAmounts.length == 2 ? keyAndAmounts[1] : null);
+            if (keyAndAmounts[0].endsWith("*")) {
+                prefixes.put(keyAndAmounts[0].substring(0, keyAndAmounts[0].length() - 1), amounts);
+            } else {
+                exact.put(keyAndAmounts[0], amounts);
+            }
+        }
+        int tagged = 0;
+        for (TestEntity test : tests) {
+            Map<String, Long> amounts = exact.get(test.getKey());
+            if (amounts == null) {
+                // the longest matching prefix wins
+                String prefix = null;
+                for (String candidate : prefixes.keySet()) {
+                    if (test.getKey().startsWith(candidate) && (prefix == null || candidate.length() > prefix.length())) {
+                        prefix = candidate;
+                    }
+                }
+                amounts = prefix == null ? null : prefixes.get(prefix);
+            }
+            if (amounts != null && !amounts.isEmpty()) {
+                test.resources = amounts;
+                tagged++;
+            }
+        }
+        return tagged;
+    }
+
+    /**
+     * Moves tests needing resources out of knapsacks exceeding the budget into knapsacks with room for them,
+     * swapped for the test without resources that keeps both knapsacks the shortest, or alone if that is shorter.
+     * Shorter tests are moved first, as they unbalance the knapsacks the least.
+     *
+     * @param sorted tests, already packed into the knapsacks, in the descending order of the duration
+     * @param budget how much of each resource the tests of a knapsack may need in total; other resources are not limited
+     * @param deviations how many standard deviations to add to the mean when predicting durations
+     * @return the number of tests moved
+     */
+    static int enforce(List<TestEntity> sorted, List<Knapsack> knapsacks, Map<String, Long> budget, double deviations) {
+        Map<Knapsack, Map<String, Long>> usage = usage(sorted, knapsacks);
+        Map<Knapsack, List<TestEntity>> free = Knapsack.contents(knapsacks, sorted, t -> t.getResources().isEmpty());
+        List<TestEntity> needing = new ArrayList<>();
+        for (TestEntity test : sorted) {
+            if (!test.getResources().isEmpty()) {
+                needing.add(test);
+            }
+        }
+        int moved = 0;
+        for (int i = needing.size() - 1; i >= 0; i--) {
+            TestEntity test = needing.get(i);
+            Knapsack from = test.knapsack;
+            if (!relieves(usage.get(from), test.getResources(), budget)) {
+                continue;
+            }
+            List<Knapsack> targets = new ArrayList<>();
+            for (Knapsack to : knapsacks) {
+                if (fits(usage.get(to), test.getResources(), budget)) {
+                    targets.add(to);
+                }
+            }
+            Knapsack.Move move = Knapsack.move(test, targets, free, deviations, (fromLoad, toLoad, partner) -> Math.max(fromLoad, toLoad));
+            if (move == null) {
+                continue;
+            }
+            move.apply(test, free);
+            add(usage.get(from), test.getResources(), -1);
+            add(usage.get(move.to), test.getResources(), 1);
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * @return the number of knapsacks whose tests need more than the budget
+     */
+    static int exceeding(List<TestEntity> sorted, List<Knapsack> knapsacks, Map<String, Long> budget) {
+        int exceeding = 0;
+        for (Map<String, Long> used : usage(sorted, knapsacks).values()) {
+            if (!fits(used, Map.of(), budget)) {
+                exceeding++;
+            }
+        }
+        return exceeding;
+    }
+
+    private static Map<Knapsack, Map<String, Long>> usage(List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        Map<Knapsack, Map<String, Long>> usage = new IdentityHashMap<>();
+        for (Knapsack k : knapsacks) {
+            usage.put(k, new HashMap<>());
+        }
+        for (TestEntity test : sorted) {
+            add(usage.get(test.knapsack), test.getResources(), 1);
+        }
+        return usage;
+    }
+
+    private static void add(Map<String, Long> used, Map<String, Long> amounts, int sign) {
+        for (Map.Entry<String, Long> e : amounts.entrySet()) {
+            used.merge(e.getKey(), sign * e.getValue(), Long::sum);
+        }
+    }
+
+    private static boolean fits(Map<String, Long> used, Map<String, Long> extra, Map<String, Long> budget) {
+        for (Map.Entry<String, Long> e : budget.entrySet()) {
+            if (used.getOrDefault(e.getKey(), 0L) + extra.getOrDefault(e.getKey(), 0L) > e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the knapsack exceeds the budget of a resource the test needs
+     */
+    private static boolean relieves(Map<String, Long> used, Map<String, Long> amounts, Map<String, Long> budget) {
+        for (Map.Entry<String, Long> e : budget.entrySet()) {
+            if (used.getOrDefault(e.getKey(), 0L) > e.getValue() && amounts.getOrDefault(e.getKey(), 0L) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ResourceBudget() {}
+}
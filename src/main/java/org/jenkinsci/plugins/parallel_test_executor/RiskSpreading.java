@@ -0,0 +1,86 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+/**
+ * Plans for builds that are going to fail to fail early: tests which failed recently are spread evenly
+ * over the splits and listed before the others.
+ */
+final class RiskSpreading {
+
+    private static final Comparator<TestEntity> BY_RISK = Comparator.comparingDouble(TestEntity::getRisk).reversed();
+
+    /**
+     * Swaps tests with a {@linkplain TestEntity#getRisk() risk} out of knapsacks holding more than their share of them,
+     * for tests of similar duration without risk, or just moves them, as long as the longest knapsack does not grow.
+     *
+     * @param sorted tests, already packed into the knapsacks, in the descending order of the duration
+     * @param deviations how many standard deviations to add to the mean when predicting durations
+     * @return the number of tests with a risk
+     */
+    static int spread(List<TestEntity> sorted, List<Knapsack> knapsacks, double deviations) {
+        List<TestEntity> risky = new ArrayList<>();
+        Map<Knapsack, Integer> counts = new IdentityHashMap<>();
+        for (Knapsack k : knapsacks) {
+            counts.put(k, 0);
+        }
+        for (TestEntity test : sorted) {
+            if (test.risk > 0) {
+                risky.add(test);
+                counts.merge(test.knapsack, 1, Integer::sum);
+            }
+        }
+        if (risky.isEmpty()) {
+            return 0;
+        }
+        risky.sort(BY_RISK);
+        int share = (risky.size() + knapsacks.size() - 1) / knapsacks.size();
+        Map<Knapsack, List<TestEntity>> safe = Knapsack.contents(knapsacks, sorted, t -> t.risk == 0);
+        long makespan = 0;
+        for (Knapsack k : knapsacks) {
+            makespan = Math.max(makespan, k.predicted(deviations));
+        }
+        long limit = makespan;
+        // the least risky tests are moved first, the others stay where the packing put them if possible
+        for (int i = risky.size() - 1; i >= 0; i--) {
+            TestEntity test = risky.get(i);
+            Knapsack from = test.knapsack;
+            if (counts.get(from) <= share) {
+                continue;
+            }
+            for (Knapsack to : knapsacks) {
+                if (counts.get(to) >= share) {
+                    continue;
+                }
+                // the test without risk closest in duration, or none if moving the test alone is at least as close
+                Knapsack.Move move = Knapsack.move(test, List.of(to), safe, deviations, (fromLoad, toLoad, partner) ->
+                        fromLoad <= limit && toLoad <= limit ? Math.abs((partner == null ? 0 : partner.micros) - test.micros) : Long.MAX_VALUE);
+                if (move == null) {
+                    continue;
+                }
+                move.apply(test, safe);
+                counts.merge(from, -1, Integer::sum);
+                counts.merge(to, 1, Integer::sum);
+                break;
+            }
+        }
+        return risky.size();
+    }
+
+    /**
+     * @param sorted tests, in the descending order of the duration
+     * @return the same tests, those with the highest risk first, then the others in their original order
+     */
+    static List<TestEntity> riskFirst(List<TestEntity> sorted) {
+        List<TestEntity> ordered = new ArrayList<>(sorted);
+        ordered.sort(BY_RISK);
+        return ordered;
+    }
+
+    private RiskSpreading() {}
+}
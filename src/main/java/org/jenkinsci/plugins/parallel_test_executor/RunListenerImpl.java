@@ -8,7 +8,7 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import org.jenkinsci.plugins.variant.OptionalExtension;
 
 /**
- * Looks for {@link TestCollector} in the build and collects the test reports.
+ * Looks for {@link TestCollector} in the build, collects the test reports and reports its duration.
  *
  * @author Kohsuke Kawaguchi
  */
@@ -17,7 +17,9 @@ public class RunListenerImpl extends RunListener<AbstractBuild<?,?>> {
     @Override
     public void onCompleted(AbstractBuild<?,?> build, @NonNull TaskListener listener) {
         TestCollector m = build.getAction(TestCollector.class);
-        if (m!=null)
+        if (m!=null) {
             m.collect(build,listener);
+            m.reportDuration(build);
+        }
     }
 }
@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+/**
+ * Order in which the tests of each split should be run, for build tools able to follow a list of tests.
+ */
+public enum RunOrder {
+    NONE("No run order"),
+    LONGEST_FIRST("Longest tests first"),
+    RISK_FIRST("Tests which failed recently first, then longest first"),
+    GROUPED("Tests of the same package or class together, longest groups first");
+
+    private final String displayName;
+
+    RunOrder(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * @param sorted tests, in the descending order of the duration
+     * @return the same tests, in this order
+     */
+    List<TestEntity> sort(List<TestEntity> sorted) {
+        switch (this) {
+            case RISK_FIRST:
+                return RiskSpreading.riskFirst(sorted);
+            case GROUPED:
+                Map<String, Long> totals = new HashMap<>();
+                for (TestEntity test : sorted) {
+                    totals.merge(group(test), test.micros, Long::sum);
+                }
+                List<TestEntity> grouped = new ArrayList<>(sorted);
+                grouped.sort(Comparator.comparingLong((TestEntity test) -> totals.get(group(test))).reversed().thenComparing(RunOrder::group));
+                return grouped;
+            default:
+                return sorted;
+        }
+    }
+
+    private static String group(TestEntity test) {
+        String group = test.getGroup();
+        return group == null ? test.getKey() : group;
+    }
+
+    /**
+     * @param sorted tests, in the descending order of the duration
+     * @param knapsacks the splits the tests were packed into
+     * @return the {@linkplain TestEntity#getKey() keys} of the tests of each split, in this order
+     */
+    List<List<String>> orders(List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        Map<Knapsack, List<String>> orders = new IdentityHashMap<>();
+        List<List<String>> r = new ArrayList<>(knapsacks.size());
+        for (Knapsack k : knapsacks) {
+            List<String> order = new ArrayList<>();
+            orders.put(k, order);
+            r.add(order);
+        }
+        for (TestEntity test : sort(sorted)) {
+            orders.get(test.knapsack).add(test.getKey());
+        }
+        return r;
+    }
+}
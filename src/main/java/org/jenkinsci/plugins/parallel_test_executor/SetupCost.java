@@ -0,0 +1,180 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.util.SystemProperties;
+
+/**
+ * Accounts for the {@linkplain TestEntity#getSetup() setup} of a group of tests, such as the class-level setup of
+ * test cases, which every split running any test of the group spends again.
+ * <p>
+ * The tests of such a group are bundled into chunks packed as a whole, each charged the setup once:
+ * as many chunks as keep the longest split the shortest, which is a single chunk unless the group is long.
+ * </p>
+ */
+final class SetupCost {
+
+    static final boolean DISABLED = SystemProperties.getBoolean(SetupCost.class.getName() + ".disabled");
+
+    /**
+     * @param sorted tests in the descending order of the duration
+     * @param splits number of splits the tests are going to be packed into, at least 1
+     * @return chunks and the tests of groups without setup, in the descending order of the duration,
+     *         or {@code sorted} itself if no test has a setup
+     */
+    static List<TestEntity> chunk(List<TestEntity> sorted, int splits) {
+        Map<String, List<TestEntity>> groups = new LinkedHashMap<>();
+        List<TestEntity> r = new ArrayList<>();
+        long total = 0;
+        for (TestEntity test : sorted) {
+            total += test.getMicros();
+            String group = test.getGroup();
+            if (group != null && test.getSetup() > 0) {
+                groups.computeIfAbsent(group, g -> new ArrayList<>()).add(test);
+            } else {
+                r.add(test);
+            }
+        }
+        if (groups.isEmpty()) {
+            return sorted;
+        }
+        for (List<TestEntity> members : groups.values()) {
+            total += setup(members) * 1000;
+        }
+        for (List<TestEntity> members : groups.values()) {
+            long setup = setup(members) * 1000;
+            long micros = 0;
+            for (TestEntity test : members) {
+                micros += test.getMicros();
+            }
+            // each chunk more shortens the longest chunk but lengthens the average split by the setup
+            int count = 1;
+            long best = Long.MAX_VALUE;
+            for (int k = 1; k <= Math.min(members.size(), splits); k++) {
+                long makespan = Math.max((micros + k - 1) / k + setup, (total + (k - 1) * setup) / splits);
+                if (makespan < best) {
+                    best = makespan;
+                    count = k;
+                }
+            }
+            List<Chunk> chunks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                chunks.add(new Chunk(setup / 1000));
+            }
+            // members are sorted, so each goes to the shortest chunk so far
+            for (TestEntity test : members) {
+                Collections.min(chunks, (a, b) -> Long.compare(a.micros, b.micros)).add(test);
+            }
+            r.addAll(chunks);
+        }
+        Collections.sort(r);
+        return r;
+    }
+
+    /**
+     * Replaces chunks, already packed into knapsacks, by the tests they bundle, put into the same knapsacks.
+     * The knapsacks keep the setup in their total.
+     *
+     * @return the tests in the descending order of the duration
+     */
+    static List<TestEntity> unchunk(List<TestEntity> tests) {
+        List<TestEntity> r = new ArrayList<>();
+        for (TestEntity test : tests) {
+            if (test instanceof Chunk) {
+                Chunk chunk = (Chunk) test;
+                for (TestEntity member : chunk.members) {
+                    member.knapsack = chunk.knapsack;
+                    r.add(member);
+                }
+                if (chunk.knapsack != null) {
+                    chunk.knapsack.count += chunk.members.size() - 1;
+                }
+            } else {
+                r.add(test);
+            }
+        }
+        Collections.sort(r);
+        return r;
+    }
+
+    /**
+     * @return the number of groups whose tests were bundled
+     */
+    static int groups(List<TestEntity> tests) {
+        return (int) tests.stream().filter(t -> t instanceof Chunk).map(TestEntity::getGroup).distinct().count();
+    }
+
+    /**
+     * @return the number of chunks
+     */
+    static int chunks(List<TestEntity> tests) {
+        return (int) tests.stream().filter(t -> t instanceof Chunk).count();
+    }
+
+    private static long setup(List<TestEntity> members) {
+        long setup = 0;
+        for (TestEntity test : members) {
+            setup = Math.max(setup, test.getSetup());
+        }
+        return setup;
+    }
+
+    @SuppressFBWarnings(value="EQ_COMPARETO_USE_OBJECT_EQUALS", justification="Cf. justification in Knapsack.")
+    private static final class Chunk extends TestEntity {
+        private final List<TestEntity> members = new ArrayList<>();
+
+        private Chunk(long setup) {
+            this.setup = setup;
+            this.micros = setup * 1000;
+        }
+
+        private void add(TestEntity test) {
+            members.add(test);
+            micros += test.getMicros();
+            variance += test.getVariance();
+            risk = Math.max(risk, test.getRisk());
+            if (!test.getResources().isEmpty()) {
+                if (resources == null) {
+                    resources = new HashMap<>();
+                }
+                test.getResources().forEach((name, amount) -> resources.merge(name, amount, Long::sum));
+            }
+        }
+
+        @Override
+        public String getKey() {
+            return members.get(0).getKey();
+        }
+
+        @Override
+        public List<String> getElements() {
+            List<String> elements = new ArrayList<>();
+            for (TestEntity test : members) {
+                elements.addAll(test.getElements());
+            }
+            return elements;
+        }
+
+        @Override
+        public String getGroup() {
+            return members.get(0).getGroup();
+        }
+
+        @Override
+        public List<String> getGroupElements() {
+            return members.get(0).getGroupElements();
+        }
+
+        @Override
+        public String toString() {
+            return getGroup() + members;
+        }
+    }
+
+    private SetupCost() {}
+}
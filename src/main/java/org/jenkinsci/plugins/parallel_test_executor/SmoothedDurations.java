@@ -0,0 +1,88 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Combines the durations recorded in several reference builds into an exponentially weighted moving average,
+ * so that a single slow or fast build does not skew the next plan.
+ * The weighted variance of the durations is recorded as well, for strategies balancing a percentile of the split durations,
+ * and so is the weighted share of builds in which each test failed.
+ */
+public class SmoothedDurations extends DurationModel {
+
+    private int builds = 5;
+
+    private int halfLife = 2;
+
+    @DataBoundConstructor
+    public SmoothedDurations() {}
+
+    @Override
+    public int getBuilds() {
+        return builds;
+    }
+
+    /**
+     * @param builds how many reference builds to combine
+     */
+    @DataBoundSetter
+    public void setBuilds(int builds) {
+        this.builds = Math.max(1, Math.min(builds, ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH));
+    }
+
+    public int getHalfLife() {
+        return halfLife;
+    }
+
+    /**
+     * @param halfLife after how many builds the weight of a recorded duration is halved
+     */
+    @DataBoundSetter
+    public void setHalfLife(int halfLife) {
+        this.halfLife = Math.max(1, halfLife);
+    }
+
+    @Override
+    Map<String, TestEntity> combine(List<Map<String, TestEntity>> builds) {
+        Map<String, TestEntity> data = new TreeMap<>();
+        Map<String, double[]> sums = new HashMap<>();
+        for (int age = 0; age < builds.size(); age++) {
+            double weight = Math.pow(0.5, (double) age / halfLife);
+            for (TestEntity test : builds.get(age).values()) {
+                // the newest observation of a test represents it in the plan
+                data.putIfAbsent(test.getKey(), test);
+                double[] sum = sums.computeIfAbsent(test.getKey(), k -> new double[4]);
+                sum[0] += weight;
+                double millis = test.getMicros() / 1000.0;
+                sum[1] += weight * millis;
+                sum[2] += weight * millis * millis;
+                sum[3] += weight * test.risk;
+            }
+        }
+        for (TestEntity test : data.values()) {
+            double[] sum = sums.get(test.getKey());
+            double mean = sum[1] / sum[0];
+            test.setDuration(mean / 1000);
+            test.variance = Math.round(Math.max(0, sum[2] / sum[0] - mean * mean));
+            test.risk = sum[3] / sum[0];
+        }
+        return data;
+    }
+
+    @Symbol("smoothed")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<DurationModel> {
+        @Override
+        public String getDisplayName() {
+            return "Weighted average of durations from several reference builds";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH;
+
+/**
+ * Records the split each test was assigned to by a build, so that later builds can keep tests where they were.
+ * <p>
+ * Only the name of the file holding the assignment of each stage is saved with the build;
+ * the assignment itself is written to the build directory.
+ * </p>
+ */
+final class SplitAssignment extends InvisibleAction {
+
+    private static final Logger LOGGER = Logger.getLogger(SplitAssignment.class.getName());
+
+    /**
+     * File of each stage, the empty string standing for splits not limited to a stage.
+     */
+    private final Map<String, String> files = new LinkedHashMap<>();
+
+    /**
+     * Writes the split of each test.
+     *
+     * @param knapsacks the splits, in the order they are returned
+     */
+    static void record(Run<?, ?> build, @CheckForNull String stageName, List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        Map<Knapsack, Integer> splits = new IdentityHashMap<>();
+        for (int i = 0; i < knapsacks.size(); i++) {
+            splits.put(knapsacks.get(i), i);
+        }
+        String stage = stageName == null ? "" : stageName;
+        SplitAssignment action;
+        synchronized (build) {
+            action = build.getAction(SplitAssignment.class);
+            if (action == null) {
+                action = new SplitAssignment();
+                build.addAction(action);
+            }
+        }
+        try {
+            synchronized (action) {
+                String file = action.files.get(stage);
+                if (file == null) {
+                    file = "split-assignment-" + action.files.size() + ".bin";
+                }
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(new File(build.getRootDir(), file).toPath())))) {
+                    out.writeInt(sorted.size());
+                    for (TestEntity test : sorted) {
+                        out.writeUTF(test.getKey());
+                        out.writeInt(splits.get(test.knapsack));
+                    }
+                }
+                action.files.put(stage, file);
+            }
+            build.save();
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "Failed to record the split assignment of " + build, x);
+        }
+    }
+
+    /**
+     * @return the split of each test key in the latest of the previous builds that recorded one for that stage, if any
+     */
+    @CheckForNull
+    static Map<String, Integer> load(Run<?, ?> build, @CheckForNull String stageName) {
+        String stage = stageName == null ? "" : stageName;
+        Run<?, ?> b = build.getPreviousBuild();
+        for (int i = 0; i < NUMBER_OF_BUILDS_TO_SEARCH && b != null; i++, b = b.getPreviousBuild()) {
+            SplitAssignment action = b.getAction(SplitAssignment.class);
+            if (action == null) {
+                continue;
+            }
+            String file;
+            synchronized (action) {
+                file = action.files.get(stage);
+            }
+            if (file == null) {
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(new File(b.getRootDir(), file).toPath())))) {
+                int size = in.readInt();
+                Map<String, Integer> assignment = new HashMap<>(size * 2);
+                for (int j = 0; j < size; j++) {
+                    assignment.put(in.readUTF(), in.readInt());
+                }
+                return assignment;
+            } catch (IOException x) {
+                LOGGER.log(Level.WARNING, "Failed to read the split assignment of " + b, x);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
+
+/**
+ * Options shared by {@link SplitStep} and {@link ParallelTestExecutor} that control how {@link Splitter} computes splits.
+ */
+final class SplitConfiguration {
+    final Parallelism parallelism;
+    @CheckForNull TestMode testMode;
+    @CheckForNull SplitStrategy strategy;
+    @CheckForNull DurationModel durationModel;
+    boolean generateInclusions;
+    /**
+     * Whether to designate a group of tests that all fall in one split by a single pattern.
+     */
+    boolean compressPatterns;
+    /**
+     * Percentage by which the longest split may grow to keep groups of tests in one split.
+     */
+    int groupTolerance;
+    /**
+     * Whether to spread tests which failed recently over the splits and list them first.
+     */
+    boolean failFast;
+    /**
+     * Whether to add tests found in the workspace to those of the reference builds, and drop those no longer found.
+     */
+    boolean discoverNewTests;
+    /**
+     * Order in which the tests of each split should be run, if any.
+     */
+    @CheckForNull RunOrder runOrder;
+    /**
+     * If set, only consider tests recorded in the reference builds in that stage.
+     */
+    @CheckForNull String stageName;
+    /**
+     * Id of the flow node of the {@link SplitStep} computing the splits, to find the branches running them.
+     */
+    @CheckForNull String nodeId;
+    /**
+     * Label of the agents each split is meant to run on, cycled through if there are more splits than labels.
+     */
+    @CheckForNull List<String> labels;
+    /**
+     * How many times longer than predicted tests take on the agents of a label, overriding the learned factors.
+     */
+    @CheckForNull Map<String, Double> speeds;
+    /**
+     * File of the workspace listing the resources needed by tests, if any.
+     */
+    @CheckForNull String resourceFile;
+    /**
+     * How much of each resource the tests of a split may need in total.
+     */
+    @CheckForNull Map<String, Long> resourceBudget;
+    /**
+     * Time spent and work done computing splits with this configuration.
+     */
+    final SplitMetrics metrics = new SplitMetrics();
+
+    SplitConfiguration(Parallelism parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the label of the agents the split is meant to run on, if any
+     */
+    @CheckForNull
+    String getLabel(int split) {
+        return labels == null || labels.isEmpty() ? null : labels.get(split % labels.size());
+    }
+
+    @NonNull
+    TestMode getTestMode() {
+        return testMode == null ? TestMode.getDefault() : testMode;
+    }
+
+    @NonNull
+    SplitStrategy getStrategy() {
+        return strategy == null ? SplitStrategy.getDefault() : strategy;
+    }
+
+    @NonNull
+    RunOrder getRunOrder() {
+        return runOrder == null ? RunOrder.NONE : runOrder;
+    }
+
+    @NonNull
+    DurationModel getDurationModel() {
+        return durationModel == null ? DurationModel.getDefault() : durationModel;
+    }
+}
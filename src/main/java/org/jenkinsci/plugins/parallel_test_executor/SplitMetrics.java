@@ -0,0 +1,152 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.TaskListener;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Time spent and work done by {@link Splitter} computing splits once, summarized in the build log
+ * and handed to every {@link Publisher}, such as the Metrics plugin.
+ */
+public final class SplitMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(SplitMetrics.class.getName());
+
+    /**
+     * Disjoint phases of the computation of splits.
+     */
+    public enum Phase {
+        LOOKUP("reference lookup"),
+        LOAD("loading results"),
+        STAGE("stage lookup"),
+        COLLECT("collect"),
+        PACK("packing"),
+        PATTERNS("patterns");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final long[] nanos = new long[Phase.values().length];
+    private int buildsSkipped;
+    private int indexHits;
+    private int indexMisses;
+    private int entities;
+    private long patternBytes;
+
+    /**
+     * Adds the time elapsed since {@code start} to a phase.
+     * @param start value of {@link System#nanoTime()} when the phase started
+     */
+    void add(Phase phase, long start) {
+        nanos[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    /**
+     * Removes time accounted to another phase nested within this one.
+     */
+    void subtract(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()] -= nanos;
+    }
+
+    void buildSkipped() {
+        buildsSkipped++;
+    }
+
+    /**
+     * Counts a reference build read from its {@link TestTimingIndex}, or from its full test result if {@code hit} is false.
+     */
+    void indexLookup(boolean hit) {
+        if (hit) {
+            indexHits++;
+        } else {
+            indexMisses++;
+        }
+    }
+
+    void setEntities(int entities) {
+        this.entities = entities;
+    }
+
+    void setPatternBytes(long patternBytes) {
+        this.patternBytes = patternBytes;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return how many builds preceding the build computing splits were not usable as reference, such as failed builds
+     */
+    public int getBuildsSkipped() {
+        return buildsSkipped;
+    }
+
+    /**
+     * @return how many reference builds were read from their {@link TestTimingIndex}
+     */
+    public int getIndexHits() {
+        return indexHits;
+    }
+
+    /**
+     * @return how many reference builds required loading their full test result
+     */
+    public int getIndexMisses() {
+        return indexMisses;
+    }
+
+    public int getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return the number of characters of all the inclusion and exclusion lists, roughly their size in bytes
+     */
+    public long getPatternBytes() {
+        return patternBytes;
+    }
+
+    /**
+     * Prints a summary to the build log and publishes the metrics.
+     */
+    void report(TaskListener listener) {
+        StringBuilder b = new StringBuilder("Computed splits in");
+        for (Phase phase : Phase.values()) {
+            b.append(phase == Phase.LOOKUP ? " " : ", ").append(phase.displayName).append('=')
+                    .append(TimeUnit.NANOSECONDS.toMillis(getNanos(phase))).append("ms");
+        }
+        b.append(String.format("; %d tests, %d bytes of patterns, %d builds skipped, %d of %d reference builds read from their index",
+                entities, patternBytes, buildsSkipped, indexHits, indexHits + indexMisses));
+        listener.getLogger().println(b);
+        if (Jenkins.getInstanceOrNull() == null) {
+            return;
+        }
+        for (Publisher publisher : ExtensionList.lookup(Publisher.class)) {
+            try {
+                publisher.publish(this);
+            } catch (RuntimeException x) {
+                LOGGER.log(Level.WARNING, "Failed to publish split metrics with " + publisher, x);
+            }
+        }
+    }
+
+    /**
+     * Receives the metrics of each computation of splits.
+     */
+    public abstract static class Publisher implements ExtensionPoint {
+        public abstract void publish(SplitMetrics metrics);
+    }
+}
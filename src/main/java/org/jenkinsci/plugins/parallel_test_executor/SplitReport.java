@@ -0,0 +1,526 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
+import hudson.model.listeners.RunListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.RunAction2;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+
+import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH;
+
+/**
+ * Compares the duration {@link Splitter} predicted for each split of a build with the time it actually took,
+ * so that the effect of a change of the strategy or of the parallelism can be followed across builds.
+ * <p>
+ * The actual duration of a split is the duration of the build it triggered for {@link ParallelTestExecutor},
+ * and for {@link SplitStep} the time the matching branch of the first {@code parallel} step following it with as many
+ * branches as there are splits, branches being matched in the order they were declared, took from the start of its first
+ * {@code node} block, once an agent was allocated, to its end, so that waiting in the queue does not count.
+ * The agent each branch ran on is recorded too, for {@link AgentSpeeds} to learn how fast the agents of each label are.
+ * </p>
+ */
+public final class SplitReport implements RunAction2 {
+
+    private static final Logger LOGGER = Logger.getLogger(SplitReport.class.getName());
+
+    private final List<Plan> plans = new ArrayList<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Records the predicted duration of each split.
+     *
+     * @param knapsacks the splits, in the order they are returned
+     */
+    static void planned(Run<?, ?> build, SplitConfiguration configuration, List<Knapsack> knapsacks) {
+        long[] predicted = new long[knapsacks.size()];
+        double[] slowdowns = null;
+        String[] labels = null;
+        for (int i = 0; i < predicted.length; i++) {
+            predicted[i] = knapsacks.get(i).total / 1000;
+            String label = configuration.getLabel(i);
+            if (label != null) {
+                if (labels == null) {
+                    labels = new String[predicted.length];
+                    slowdowns = new double[predicted.length];
+                }
+                labels[i] = label;
+                slowdowns[i] = knapsacks.get(i).slowdown;
+            }
+        }
+        SplitReport report;
+        synchronized (build) {
+            report = build.getAction(SplitReport.class);
+            if (report == null) {
+                report = new SplitReport();
+                build.addAction(report);
+            }
+        }
+        synchronized (report) {
+            report.plans.add(new Plan(configuration.stageName, configuration.nodeId, predicted, labels, slowdowns));
+        }
+    }
+
+    /**
+     * Records the duration of a build triggered by {@link ParallelTestExecutor}.
+     *
+     * @param split the index of the split it ran
+     */
+    synchronized void actual(int split, long millis) {
+        for (int i = plans.size() - 1; i >= 0; i--) {
+            Plan plan = plans.get(i);
+            if (plan.nodeId == null && split < plan.actual.length) {
+                plan.actual[split] = millis;
+                return;
+            }
+        }
+    }
+
+    @NonNull
+    public synchronized List<Plan> getPlans() {
+        return new ArrayList<>(plans);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return the plans of this build and of the previous ones, newest first, for those whose splits all completed
+     */
+    @NonNull
+    public List<Row> getTrend() {
+        List<Row> trend = new ArrayList<>();
+        Run<?, ?> b = run;
+        for (int i = 0; i < NUMBER_OF_BUILDS_TO_SEARCH && b != null; i++, b = b.getPreviousBuild()) {
+            SplitReport report = b.getAction(SplitReport.class);
+            if (report == null) {
+                continue;
+            }
+            for (Plan plan : report.getPlans()) {
+                if (plan.isComplete()) {
+                    trend.add(new Row(b, plan));
+                }
+            }
+        }
+        return trend;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Split Report";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "splits";
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    /**
+     * Splits computed by one invocation of {@link Splitter}.
+     */
+    public static final class Plan {
+        @CheckForNull
+        private final String stageName;
+        /**
+         * Id of the flow node of the {@link SplitStep}, or null for {@link ParallelTestExecutor}.
+         */
+        @CheckForNull
+        private final String nodeId;
+        /**
+         * Duration of each split predicted from the durations of its tests, whatever the agent running it.
+         */
+        private final long[] predicted;
+        /**
+         * Label of the agents each split was meant to run on, or null if no labels were given.
+         */
+        @CheckForNull
+        private final String[] labels;
+        /**
+         * How many times longer than predicted tests were expected to take on the agents of each split, or null if no labels were given.
+         */
+        @CheckForNull
+        private final double[] slowdowns;
+        /**
+         * Actual duration of each split, or -1 if unknown.
+         */
+        private final long[] actual;
+        /**
+         * Agent each split ran on and its labels separated by spaces, or null if unknown.
+         */
+        @CheckForNull
+        private String[] nodes, nodeLabels;
+
+        Plan(@CheckForNull String stageName, @CheckForNull String nodeId, long[] predicted,
+             @CheckForNull String[] labels, @CheckForNull double[] slowdowns) {
+            this.stageName = stageName;
+            this.nodeId = nodeId;
+            this.predicted = predicted;
+            this.labels = labels;
+            this.slowdowns = slowdowns;
+            this.actual = new long[predicted.length];
+            Arrays.fill(actual, -1);
+        }
+
+        @CheckForNull
+        public String getStageName() {
+            return stageName;
+        }
+
+        @CheckForNull
+        String getNodeId() {
+            return nodeId;
+        }
+
+        public int getSize() {
+            return predicted.length;
+        }
+
+        /**
+         * @return the predicted duration of the split, accounting for the speed of the agents it was meant to run on
+         */
+        public long getPredicted(int split) {
+            return slowdowns == null ? predicted[split] : Math.round(predicted[split] * slowdowns[split]);
+        }
+
+        /**
+         * @return the predicted duration of the split from the durations of its tests only
+         */
+        public long getBase(int split) {
+            return predicted[split];
+        }
+
+        @CheckForNull
+        public String getLabel(int split) {
+            return labels == null ? null : labels[split];
+        }
+
+        /**
+         * @return the agent the split ran on, if known
+         */
+        @CheckForNull
+        public String getNode(int split) {
+            return nodes == null ? null : nodes[split];
+        }
+
+        /**
+         * @return the labels the speed of the agent running the split is attributed to
+         */
+        @NonNull
+        List<String> getLearnedLabels(int split) {
+            List<String> r = new ArrayList<>();
+            if (labels != null && labels[split] != null) {
+                r.add(labels[split]);
+            }
+            if (nodeLabels != null && nodeLabels[split] != null) {
+                for (String label : nodeLabels[split].split(" ")) {
+                    if (!label.isEmpty() && !r.contains(label)) {
+                        r.add(label);
+                    }
+                }
+            }
+            return r;
+        }
+
+        /**
+         * @return the actual duration of the split, or -1 if unknown
+         */
+        public long getActual(int split) {
+            return actual[split];
+        }
+
+        /**
+         * @return by how many percent the actual duration of the split exceeded the prediction, or null if unknown
+         */
+        @CheckForNull
+        public Long getError(int split) {
+            long p = getPredicted(split);
+            if (actual[split] < 0 || p == 0) {
+                return null;
+            }
+            return Math.round(100.0 * (actual[split] - p) / p);
+        }
+
+        public boolean isComplete() {
+            for (long a : actual) {
+                if (a < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long getPredictedMakespan() {
+            return max(getPredicted());
+        }
+
+        /**
+         * @return the duration of the longest split, or -1 if any is unknown
+         */
+        public long getActualMakespan() {
+            return isComplete() ? max(actual) : -1;
+        }
+
+        /**
+         * @return the ratio of the longest predicted split to the average one, 1 meaning perfectly balanced
+         */
+        public double getPredictedImbalance() {
+            return imbalance(getPredicted());
+        }
+
+        private long[] getPredicted() {
+            long[] r = new long[predicted.length];
+            for (int i = 0; i < r.length; i++) {
+                r[i] = getPredicted(i);
+            }
+            return r;
+        }
+
+        /**
+         * @return the ratio of the longest split to the average one, or 0 if any is unknown
+         */
+        public double getActualImbalance() {
+            return isComplete() ? imbalance(actual) : 0;
+        }
+
+        private static long max(long[] durations) {
+            long max = 0;
+            for (long d : durations) {
+                max = Math.max(max, d);
+            }
+            return max;
+        }
+
+        private static double imbalance(long[] durations) {
+            long total = 0;
+            for (long d : durations) {
+                total += d;
+            }
+            return total == 0 ? 1 : (double) max(durations) * durations.length / total;
+        }
+    }
+
+    /**
+     * A plan in the trend, with the build which made it.
+     */
+    public static final class Row {
+        private final Run<?, ?> build;
+        private final Plan plan;
+
+        Row(Run<?, ?> build, Plan plan) {
+            this.build = build;
+            this.plan = plan;
+        }
+
+        public Run<?, ?> getBuild() {
+            return build;
+        }
+
+        public Plan getPlan() {
+            return plan;
+        }
+    }
+
+    /**
+     * A branch of a {@code parallel} step which ran a split.
+     */
+    static final class Branch {
+        /**
+         * Time from the start of the first {@code node} block of the branch, or of the branch if it has none,
+         * to the end of the branch, or -1 if it did not complete.
+         */
+        final long millis;
+        /**
+         * Agent of the first {@code node} block of the branch and its labels separated by spaces, if any.
+         */
+        @CheckForNull
+        final String node, labels;
+
+        Branch(long millis, @CheckForNull String node, @CheckForNull String labels) {
+            this.millis = millis;
+            this.node = node;
+            this.labels = labels;
+        }
+    }
+
+    /**
+     * @return the branches of the first parallel step following the node with as many branches as {@code splits},
+     *         directly inside the block enclosing the node or one enclosing it, such as after the {@code node} block
+     *         the splits were planned in, in the order they were declared, or null if there is no such step
+     */
+    @CheckForNull
+    static List<Branch> branches(Iterable<FlowNode> nodes, String nodeId, int splits) {
+        int after = id(nodeId);
+        Map<String, FlowNode> byId = new HashMap<>();
+        Map<String, List<BlockStartNode>> branches = new HashMap<>();
+        Map<String, FlowNode> ends = new HashMap<>();
+        for (FlowNode node : nodes) {
+            byId.put(node.getId(), node);
+            if (node instanceof BlockEndNode) {
+                ends.put(((BlockEndNode<?>) node).getStartNode().getId(), node);
+            } else if (node instanceof BlockStartNode && node.getPersistentAction(ThreadNameAction.class) != null
+                    && node.getParentIds().size() == 1) {
+                branches.computeIfAbsent(node.getParentIds().get(0), k -> new ArrayList<>()).add((BlockStartNode) node);
+            }
+        }
+        // so that a parallel step elsewhere, such as in a later stage, is not taken for the one running the splits
+        FlowNode planned = byId.get(nodeId);
+        Set<String> enclosing = new HashSet<>();
+        if (planned != null) {
+            for (BlockStartNode block : planned.iterateEnclosingBlocks()) {
+                enclosing.add(block.getId());
+            }
+        }
+        String parallel = null;
+        for (Map.Entry<String, List<BlockStartNode>> entry : branches.entrySet()) {
+            int id = id(entry.getKey());
+            if (id > after && entry.getValue().size() == splits && (parallel == null || id < id(parallel))
+                    && (planned == null || enclosedBy(byId.get(entry.getKey()), enclosing))) {
+                parallel = entry.getKey();
+            }
+        }
+        if (parallel == null) {
+            return null;
+        }
+        List<BlockStartNode> starts = branches.get(parallel);
+        starts.sort((a, b) -> Integer.compare(id(a.getId()), id(b.getId())));
+        Set<String> startIds = new HashSet<>();
+        for (BlockStartNode start : starts) {
+            startIds.add(start.getId());
+        }
+        // body of the first node block of each branch, which carries the workspace
+        Map<String, FlowNode> bodies = new HashMap<>();
+        for (FlowNode node : nodes) {
+            if (node.getPersistentAction(WorkspaceAction.class) == null) {
+                continue;
+            }
+            for (BlockStartNode block : node.iterateEnclosingBlocks()) {
+                if (startIds.contains(block.getId())) {
+                    bodies.merge(block.getId(), node, (a, b) -> id(a.getId()) < id(b.getId()) ? a : b);
+                    break;
+                }
+            }
+        }
+        List<Branch> r = new ArrayList<>(splits);
+        for (BlockStartNode start : starts) {
+            FlowNode end = ends.get(start.getId());
+            FlowNode body = bodies.get(start.getId());
+            WorkspaceAction workspace = body == null ? null : body.getPersistentAction(WorkspaceAction.class);
+            String labels = null;
+            if (workspace != null) {
+                StringBuilder b = new StringBuilder();
+                for (LabelAtom label : workspace.getLabels()) {
+                    b.append(b.length() == 0 ? "" : " ").append(label.getName());
+                }
+                labels = b.toString();
+            }
+            r.add(new Branch(end == null ? -1 : TimingAction.getStartTime(end) - TimingAction.getStartTime(body == null ? start : body),
+                    workspace == null ? null : workspace.getNode(), labels));
+        }
+        return r;
+    }
+
+    /**
+     * @return whether the innermost block enclosing the node is one of these, or there is none
+     */
+    private static boolean enclosedBy(@CheckForNull FlowNode node, Set<String> blockIds) {
+        if (node == null) {
+            return false;
+        }
+        Iterator<BlockStartNode> blocks = node.iterateEnclosingBlocks().iterator();
+        return !blocks.hasNext() || blockIds.contains(blocks.next().getId());
+    }
+
+    /**
+     * @return the number of a node, increasing in the order nodes are created, or -1 if the id is not a number
+     */
+    private static int id(String nodeId) {
+        try {
+            return Integer.parseInt(nodeId);
+        } catch (NumberFormatException x) {
+            return -1;
+        }
+    }
+
+    /**
+     * Joins the plans of a Pipeline build with the branches which ran them once the build is over.
+     */
+    @Extension
+    public static final class Joiner extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            SplitReport report = run.getAction(SplitReport.class);
+            if (report == null || !(run instanceof FlowExecutionOwner.Executable)) {
+                return;
+            }
+            try {
+                FlowExecutionOwner owner = ((FlowExecutionOwner.Executable) run).asFlowExecutionOwner();
+                FlowExecution execution = owner == null ? null : owner.getOrNull();
+                if (execution == null) {
+                    return;
+                }
+                List<FlowNode> nodes = new DepthFirstScanner().allNodes(execution);
+                synchronized (report) {
+                    for (Plan plan : report.plans) {
+                        if (plan.nodeId == null) {
+                            continue;
+                        }
+                        List<Branch> branches = branches(nodes, plan.nodeId, plan.actual.length);
+                        if (branches == null) {
+                            continue;
+                        }
+                        plan.nodes = new String[branches.size()];
+                        plan.nodeLabels = new String[branches.size()];
+                        for (int i = 0; i < branches.size(); i++) {
+                            Branch branch = branches.get(i);
+                            plan.actual[i] = branch.millis;
+                            plan.nodes[i] = branch.node;
+                            plan.nodeLabels[i] = branch.labels;
+                        }
+                    }
+                }
+                run.save();
+            } catch (IOException | RuntimeException x) {
+                LOGGER.log(Level.WARNING, "Failed to join the planned splits of " + run + " with their branches", x);
+            }
+        }
+    }
+}
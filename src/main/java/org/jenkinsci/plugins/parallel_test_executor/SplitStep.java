@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
@@ -31,6 +32,28 @@ public final class SplitStep extends Step {
 
     private TestMode testMode;
 
+    private SplitStrategy strategy;
+
+    private DurationModel durationModel;
+
+    private boolean compressPatterns;
+
+    private int groupTolerance;
+
+    private boolean failFast;
+
+    private RunOrder runOrder;
+
+    private boolean discoverNewTests;
+
+    private String resourceFile;
+
+    private String resourceBudget;
+
+    private String labels;
+
+    private String speeds;
+
     @DataBoundConstructor
     public SplitStep(Parallelism parallelism) {
         this.parallelism = parallelism;
@@ -59,6 +82,135 @@ public final class SplitStep extends Step {
         this.testMode = testMode;
     }
 
+    @SuppressWarnings("unused") // jelly
+    public SplitStrategy getStrategy() {
+        return SplitStrategy.fixDefault(strategy);
+    }
+
+    @DataBoundSetter
+    public void setStrategy(SplitStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @SuppressWarnings("unused") // jelly
+    public DurationModel getDurationModel() {
+        return DurationModel.fixDefault(durationModel);
+    }
+
+    @DataBoundSetter
+    public void setDurationModel(DurationModel durationModel) {
+        this.durationModel = durationModel;
+    }
+
+    public boolean isCompressPatterns() {
+        return compressPatterns;
+    }
+
+    @DataBoundSetter
+    public void setCompressPatterns(boolean compressPatterns) {
+        this.compressPatterns = compressPatterns;
+    }
+
+    public int getGroupTolerance() {
+        return groupTolerance;
+    }
+
+    /**
+     * @param groupTolerance percentage by which the longest split may grow so that whole packages or classes stay in one split
+     */
+    @DataBoundSetter
+    public void setGroupTolerance(int groupTolerance) {
+        this.groupTolerance = Math.max(0, groupTolerance);
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast whether to spread tests which failed in the reference builds over the splits and list them first
+     */
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public RunOrder getRunOrder() {
+        return runOrder == null ? RunOrder.NONE : runOrder;
+    }
+
+    /**
+     * @param runOrder order in which the tests of each split should be run
+     */
+    @DataBoundSetter
+    public void setRunOrder(RunOrder runOrder) {
+        this.runOrder = runOrder == RunOrder.NONE ? null : runOrder;
+    }
+
+    public boolean isDiscoverNewTests() {
+        return discoverNewTests;
+    }
+
+    /**
+     * @param discoverNewTests whether to also look for tests in the workspace, to split tests added since the reference builds
+     */
+    @DataBoundSetter
+    public void setDiscoverNewTests(boolean discoverNewTests) {
+        this.discoverNewTests = discoverNewTests;
+    }
+
+    public String getResourceFile() {
+        return resourceFile;
+    }
+
+    /**
+     * @param resourceFile file of the workspace listing the resources needed by tests, such as memory
+     */
+    @DataBoundSetter
+    public void setResourceFile(String resourceFile) {
+        this.resourceFile = Util.fixEmptyAndTrim(resourceFile);
+    }
+
+    public String getResourceBudget() {
+        return resourceBudget;
+    }
+
+    /**
+     * @param resourceBudget {@code name=amount} pairs separated by commas, telling how much of each resource the tests
+     *                       of a split may need in total
+     */
+    @DataBoundSetter
+    public void setResourceBudget(String resourceBudget) {
+        ResourceBudget.parse(resourceBudget);
+        this.resourceBudget = Util.fixEmptyAndTrim(resourceBudget);
+    }
+
+    public String getLabels() {
+        return labels;
+    }
+
+    /**
+     * @param labels labels of the agents the splits are meant to run on, separated by commas and cycled through
+     */
+    @DataBoundSetter
+    public void setLabels(String labels) {
+        this.labels = Util.fixEmptyAndTrim(labels);
+    }
+
+    public String getSpeeds() {
+        return speeds;
+    }
+
+    /**
+     * @param speeds {@code label=factor} pairs separated by commas, telling how many times longer than predicted tests take
+     *               on the agents of a label, overriding the factors learned from previous builds
+     */
+    @DataBoundSetter
+    public void setSpeeds(String speeds) {
+        AgentSpeeds.parseSpeeds(speeds);
+        this.speeds = Util.fixEmptyAndTrim(speeds);
+    }
+
     /**
      * @param estimateTestsFromFiles true if we should estimate the tests from the files
      * @deprecated use {@link #setTestMode(TestMode)} instead.
@@ -89,6 +241,25 @@ public final class SplitStep extends Step {
         this.stage = Util.fixEmpty(stage);
     }
 
+    SplitConfiguration toConfiguration() {
+        SplitConfiguration configuration = new SplitConfiguration(parallelism);
+        configuration.testMode = testMode;
+        configuration.strategy = strategy;
+        configuration.durationModel = durationModel;
+        configuration.compressPatterns = compressPatterns;
+        configuration.groupTolerance = groupTolerance;
+        configuration.failFast = failFast;
+        configuration.runOrder = runOrder;
+        configuration.discoverNewTests = discoverNewTests;
+        configuration.generateInclusions = generateInclusions;
+        configuration.stageName = stage;
+        configuration.labels = AgentSpeeds.parseLabels(labels);
+        configuration.resourceFile = resourceFile;
+        configuration.resourceBudget = ResourceBudget.parse(resourceBudget);
+        configuration.speeds = AgentSpeeds.parseSpeeds(speeds);
+        return configuration;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
         return new Execution(context, this);
@@ -130,14 +301,20 @@ public final class SplitStep extends Step {
             Run<?, ?> build = context.get(Run.class);
             TaskListener listener = context.get(TaskListener.class);
             FilePath path = context.get(FilePath.class);
+            SplitConfiguration configuration = step.toConfiguration();
+            FlowNode node = context.get(FlowNode.class);
+            if (node != null) {
+                configuration.nodeId = node.getId();
+            }
 
             if (step.generateInclusions) {
-                return Splitter.findTestSplits(step.parallelism, step.testMode, build, listener, step.generateInclusions,
-                        step.stage, path);
+                return Splitter.findTestSplits(configuration, build, listener, path);
             } else {
+                if (step.runOrder != null || step.labels != null) {
+                    listener.getLogger().println("The run order and the labels of the splits are only returned with generateInclusions: true");
+                }
                 List<List<String>> result = new ArrayList<>();
-                for (InclusionExclusionPattern pattern : Splitter.findTestSplits(step.parallelism, step.testMode, build, listener,
-                        step.generateInclusions, step.stage, path)) {
+                for (InclusionExclusionPattern pattern : Splitter.findTestSplits(configuration, build, listener, path)) {
                     result.add(pattern.getList());
                 }
                 return result;
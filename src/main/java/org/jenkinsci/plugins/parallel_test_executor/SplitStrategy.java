@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.List;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Strategy that determines how {@link TestEntity}es are packed into the knapsacks.
+ */
+public abstract class SplitStrategy extends AbstractDescribableImpl<SplitStrategy> {
+    private int percentile = 50;
+
+    /*package*/ SplitStrategy() {}
+
+    public int getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @param percentile percentile of the duration of each knapsack to balance; above 50, knapsacks holding tests
+     *                   whose duration varies a lot between builds receive less work
+     */
+    @DataBoundSetter
+    public void setPercentile(int percentile) {
+        this.percentile = Math.max(50, Math.min(percentile, 99));
+    }
+
+    /**
+     * @return how many standard deviations are added to the mean duration of a knapsack when comparing knapsacks
+     */
+    double getDeviations() {
+        return percentile == 50 ? 0 : NormalDistribution.quantile(percentile / 100.0);
+    }
+
+    /**
+     * Assigns each test to one of the knapsacks.
+     *
+     * @param sorted tests, in the descending order of the duration
+     * @param knapsacks the knapsacks to fill, initially empty
+     */
+    abstract void pack(List<TestEntity> sorted, List<Knapsack> knapsacks);
+
+    /**
+     * Assigns each test to one of the knapsacks, for the splits of a build.
+     *
+     * @param sorted tests, in the descending order of the duration
+     * @param knapsacks the knapsacks to fill, initially empty
+     * @param stageName the stage the tests were looked up in, if any
+     */
+    void pack(List<TestEntity> sorted, List<Knapsack> knapsacks, Run<?, ?> build, @CheckForNull String stageName, TaskListener listener) {
+        pack(sorted, knapsacks);
+    }
+
+    /**
+     * @return whether the split of each test should be recorded with the build, for later builds to start from
+     */
+    boolean isAssignmentRecorded() {
+        return false;
+    }
+
+    /**
+     * @return the default implementation, if none is defined
+     */
+    public static SplitStrategy getDefault() {
+        return new GreedySplitStrategy();
+    }
+
+    public static SplitStrategy fixDefault(SplitStrategy strategy) {
+        if (strategy == null) {
+            return null;
+        }
+        return GreedySplitStrategy.class.equals(strategy.getClass()) && strategy.percentile == 50 ? null : strategy;
+    }
+}
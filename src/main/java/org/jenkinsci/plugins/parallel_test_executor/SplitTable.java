@@ -0,0 +1,261 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+
+/**
+ * Elements of all the tests of a set of splits, and the split each test was assigned to.
+ * <p>
+ * All the {@link InclusionExclusionPattern}s computed together share one table and only hold the index of their split,
+ * so that their memory and serialized size grows with the number of tests rather than with the number of tests times
+ * the number of splits, as each exclusion list names almost every test.
+ * </p>
+ */
+final class SplitTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Elements of all tests, in the order of the tests.
+     */
+    private final String[] elements;
+
+    /**
+     * Elements of test {@code i} are at {@code [offsets[i], offsets[i + 1])} in {@link #elements}.
+     */
+    private final int[] offsets;
+
+    /**
+     * Split of each test.
+     */
+    private final int[] assignment;
+
+    /**
+     * Number of characters of the elements of each split, followed by the total, computed on first use.
+     */
+    private transient long[] lengths;
+
+    /**
+     * @param sorted tests, in the order their elements should be listed
+     * @param knapsacks the splits the tests were packed into
+     */
+    SplitTable(List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        this(sorted, knapsacks, false);
+    }
+
+    /**
+     * @param sorted tests, in the order their elements should be listed
+     * @param knapsacks the splits the tests were packed into
+     * @param compress whether to list a {@linkplain TestEntity#getGroup() group} whose tests all fall in one split
+     *                 by its {@linkplain TestEntity#getGroupElements() group elements} rather than test by test
+     */
+    SplitTable(List<TestEntity> sorted, List<Knapsack> knapsacks, boolean compress) {
+        Map<Knapsack, Integer> splits = new IdentityHashMap<>();
+        for (int i = 0; i < knapsacks.size(); i++) {
+            splits.put(knapsacks.get(i), i);
+        }
+        Map<String, Integer> groups = new HashMap<>();
+        if (compress) {
+            for (TestEntity test : sorted) {
+                String group = test.getGroup();
+                if (group != null) {
+                    int split = splits.get(test.knapsack);
+                    // -1 marks a group spread over several splits
+                    groups.merge(group, split, (a, b) -> a.equals(b) ? a : -1);
+                }
+            }
+        }
+        List<List<String>> units = new ArrayList<>(sorted.size());
+        List<Integer> unitSplits = new ArrayList<>(sorted.size());
+        Set<String> listed = new HashSet<>();
+        for (TestEntity test : sorted) {
+            String group = test.getGroup();
+            Integer split = group == null ? null : groups.get(group);
+            if (split == null || split < 0) {
+                units.add(test.getElements());
+                unitSplits.add(splits.get(test.knapsack));
+            } else if (listed.add(group)) {
+                units.add(test.getGroupElements());
+                unitSplits.add(split);
+            }
+        }
+        offsets = new int[units.size() + 1];
+        assignment = new int[units.size()];
+        int count = 0;
+        for (int i = 0; i < units.size(); i++) {
+            assignment[i] = unitSplits.get(i);
+            offsets[i] = count;
+            count += units.get(i).size();
+        }
+        offsets[units.size()] = count;
+        elements = new String[count];
+        for (int i = 0; i < units.size(); i++) {
+            List<String> unitElements = units.get(i);
+            for (int j = 0; j < unitElements.size(); j++) {
+                elements[offsets[i] + j] = unitElements.get(j);
+            }
+        }
+    }
+
+    private SplitTable(String[] elements, int[] offsets, int[] assignment) {
+        this.elements = elements;
+        this.offsets = offsets;
+        this.assignment = assignment;
+    }
+
+    /**
+     * @return the number of entries listed, each being either a test or a whole group of tests
+     */
+    int size() {
+        return assignment.length;
+    }
+
+    /**
+     * @param includes whether to count the tests of this split, or the tests of all other splits
+     * @return the number of characters of the elements of {@link #getList}, without resolving them one by one
+     */
+    long length(int split, boolean includes) {
+        if (lengths == null) {
+            int splits = 0;
+            for (int a : assignment) {
+                splits = Math.max(splits, a + 1);
+            }
+            long[] l = new long[splits + 1];
+            for (int i = 0; i < assignment.length; i++) {
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    l[assignment[i]] += elements[j].length();
+                    l[splits] += elements[j].length();
+                }
+            }
+            lengths = l;
+        }
+        long inSplit = split < lengths.length - 1 ? lengths[split] : 0;
+        return includes ? inSplit : lengths[lengths.length - 1] - inSplit;
+    }
+
+    /**
+     * @param includes whether to list the tests of this split, or the tests of all other splits
+     * @return an unmodifiable view of the elements
+     */
+    List<String> getList(int split, boolean includes) {
+        return Collections.unmodifiableList(new Split(this, split, includes));
+    }
+
+    private Object writeReplace() {
+        return new Form(this);
+    }
+
+    /**
+     * Serialized form of a {@link SplitTable}, with each element stored as the length of the prefix it shares with the
+     * previous element and the rest of it, all concatenated into one string.
+     * Elements of a test are usually derived from the same name, so this saves most of their size.
+     */
+    private static final class Form implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] offsets;
+        private final int[] assignment;
+        private final int[] shared;
+        private final int[] lengths;
+        private final String suffixes;
+
+        Form(SplitTable table) {
+            offsets = table.offsets;
+            assignment = table.assignment;
+            shared = new int[table.elements.length];
+            lengths = new int[table.elements.length];
+            StringBuilder b = new StringBuilder();
+            String previous = "";
+            for (int i = 0; i < table.elements.length; i++) {
+                String element = table.elements[i];
+                int prefix = 0;
+                int max = Math.min(previous.length(), element.length());
+                while (prefix < max && previous.charAt(prefix) == element.charAt(prefix)) {
+                    prefix++;
+                }
+                shared[i] = prefix;
+                lengths[i] = element.length() - prefix;
+                b.append(element, prefix, element.length());
+                previous = element;
+            }
+            suffixes = b.toString();
+        }
+
+        private Object readResolve() {
+            String[] elements = new String[shared.length];
+            String previous = "";
+            int position = 0;
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = previous.substring(0, shared[i]) + suffixes.substring(position, position + lengths[i]);
+                position += lengths[i];
+                previous = elements[i];
+            }
+            return new SplitTable(elements, offsets, assignment);
+        }
+    }
+
+    /**
+     * Elements of the tests of one split, or of all other splits, resolved on first access.
+     */
+    private static final class Split extends AbstractList<String> implements RandomAccess, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SplitTable table;
+        private final int split;
+        private final boolean includes;
+        /**
+         * Positions of the elements of this split in {@link SplitTable#elements}.
+         */
+        private transient int[] positions;
+
+        Split(SplitTable table, int split, boolean includes) {
+            this.table = table;
+            this.split = split;
+            this.includes = includes;
+        }
+
+        private int[] positions() {
+            if (positions == null) {
+                int count = 0;
+                for (int i = 0; i < table.assignment.length; i++) {
+                    if (includes == (table.assignment[i] == split)) {
+                        count += table.offsets[i + 1] - table.offsets[i];
+                    }
+                }
+                int[] p = new int[count];
+                int n = 0;
+                for (int i = 0; i < table.assignment.length; i++) {
+                    if (includes == (table.assignment[i] == split)) {
+                        for (int j = table.offsets[i]; j < table.offsets[i + 1]; j++) {
+                            p[n++] = j;
+                        }
+                    }
+                }
+                positions = p;
+            }
+            return positions;
+        }
+
+        @Override
+        public String get(int index) {
+            return table.elements[positions()[index]];
+        }
+
+        @Override
+        public int size() {
+            return positions().length;
+        }
+    }
+}
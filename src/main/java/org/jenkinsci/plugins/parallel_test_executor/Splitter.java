@@ -35,22 +35,31 @@ import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.junit.ClassResult;
+import hudson.tasks.junit.SuiteResult;
 import hudson.tasks.test.AbstractTestResultAction;
 import hudson.tasks.test.TabulatedResult;
 import hudson.tasks.test.TestResult;
-import java.util.ArrayDeque;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.mixin.ChangeRequestSCMHead;
+import jenkins.util.SystemProperties;
 import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH;
 import static org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.RESULTS_OF_BUILDS_TO_CONSIDER;
 import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
@@ -64,106 +73,488 @@ class Splitter {
 
     private static final Logger LOGGER = Logger.getLogger(Splitter.class.getName());
 
+    /**
+     * Maximum number of threads used to collect the tests of a large test result.
+     */
+    private static final int COLLECT_PARALLELISM = SystemProperties.getInteger(Splitter.class.getName() + ".collectParallelism",
+            Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of test cases below which a test result is collected on the calling thread.
+     */
+    private static final int PARALLEL_COLLECT_THRESHOLD = SystemProperties.getInteger(Splitter.class.getName() + ".parallelCollectThreshold", 10_000);
+
+    /**
+     * How many builds preceding the reference builds are searched for tests missing from them.
+     */
+    private static final int GAP_BUILDS_TO_SEARCH = SystemProperties.getInteger(Splitter.class.getName() + ".gapBuildsToSearch", 5);
+
     static List<InclusionExclusionPattern> findTestSplits(Parallelism parallelism, @CheckForNull TestMode inputTestMode, Run<?,?> build, TaskListener listener,
                                                           boolean generateInclusions,
                                                           @CheckForNull final String stageName, @CheckForNull FilePath workspace) throws InterruptedException {
-        TestMode testMode = inputTestMode == null ? TestMode.getDefault() : inputTestMode;
-        TestResult tr = findPreviousTestResult(build, listener);
-        Map<String/*fully qualified class name*/, TestEntity> data = new TreeMap<>();
-        if (tr != null) {
-            tr = mayFilterByStageName(tr, stageName, listener);
-            collect(tr, data, testMode);
-        } else {
-            listener.getLogger().println("No record available, try to find test classes");
-            data = testMode.estimate(workspace, listener);
-            if(data.isEmpty()) {
-                listener.getLogger().println("No test classes was found, so executing everything in one place");
-                return List.of(new InclusionExclusionPattern(List.of(), false));
-            }
+        SplitConfiguration configuration = new SplitConfiguration(parallelism);
+        configuration.testMode = inputTestMode;
+        configuration.generateInclusions = generateInclusions;
+        configuration.stageName = stageName;
+        return findTestSplits(configuration, build, listener, workspace);
+    }
+
+    static List<InclusionExclusionPattern> findTestSplits(SplitConfiguration configuration, Run<?,?> build, TaskListener listener,
+                                                          @CheckForNull FilePath workspace) throws InterruptedException {
+        TestMode testMode = configuration.getTestMode();
+        SplitMetrics metrics = configuration.metrics;
+        List<TestEntity> sorted = findTestEntities(configuration, build, listener, workspace);
+        if (sorted.isEmpty()) {
+            listener.getLogger().println("No test classes was found, so executing everything in one place");
+            metrics.report(listener);
+            return List.of(new InclusionExclusionPattern(List.of(), false, List.of(), configuration.getLabel(0)));
         }
 
-        // sort in the descending order of the duration
-        List<TestEntity> sorted = new ArrayList<>(data.values());
-        Collections.sort(sorted);
+        if (configuration.resourceFile != null) {
+            tagResources(configuration.resourceFile, sorted, workspace, listener);
+        }
 
+        long start = System.nanoTime();
         // degree of the parallelism. we need minimum 1
-        final int n = Math.max(1, parallelism.calculate(sorted));
+        int splits = Math.max(1, configuration.parallelism.calculate(sorted, configuration.getStrategy(), build, listener));
+        List<TestEntity> packed = SetupCost.DISABLED ? sorted : SetupCost.chunk(sorted, splits);
+        if (packed != sorted) {
+            listener.getLogger().printf("Kept the test %s of %d groups with setup together in %d chunks%n",
+                    testMode.getWord(), SetupCost.groups(packed), SetupCost.chunks(packed));
+        }
+        // no split is left without a chunk to pay the setup of
+        final int n = packed == sorted ? splits : Math.min(splits, packed.size());
 
         List<ParallelTestExecutor.Knapsack> knapsacks = new ArrayList<>(n);
         for (int i = 0; i < n; i++)
             knapsacks.add(new ParallelTestExecutor.Knapsack());
+        if (configuration.getLabel(0) != null) {
+            double[] slowdowns = AgentSpeeds.slowdowns(build, configuration, n, listener);
+            for (int i = 0; i < n; i++) {
+                knapsacks.get(i).slowdown = slowdowns[i];
+            }
+        }
+        configuration.getStrategy().pack(packed, knapsacks, build, configuration.stageName, listener);
+        if (configuration.compressPatterns && configuration.groupTolerance > 0) {
+            int moved = GroupConsolidation.consolidate(packed, knapsacks, configuration.groupTolerance, configuration.getStrategy().getDeviations());
+            if (moved > 0) {
+                listener.getLogger().printf("Moved %d %s to keep them in one set%n", moved, moved == 1 ? "group" : "groups");
+            }
+        }
 
-        /*
-            This packing problem is a NP-complete problem, so we solve
-            this simply by a greedy algorithm. We pack heavier items first,
-            and the result should be of roughly equal size
-         */
-        PriorityQueue<ParallelTestExecutor.Knapsack> q = new PriorityQueue<>(knapsacks);
-        for (var testEntity : sorted) {
-            ParallelTestExecutor.Knapsack k = q.poll();
-            k.add(testEntity);
-            q.add(k);
+        if (configuration.failFast) {
+            int risky = RiskSpreading.spread(packed, knapsacks, configuration.getStrategy().getDeviations());
+            listener.getLogger().printf("%d test %s failed recently, spread over the sets and listed first%n", risky, testMode.getWord());
         }
+        Map<String, Long> budget = configuration.resourceBudget;
+        if (budget != null && !budget.isEmpty()) {
+            int moved = ResourceBudget.enforce(packed, knapsacks, budget, configuration.getStrategy().getDeviations());
+            if (moved > 0) {
+                listener.getLogger().printf("Moved %d test %s to keep the sets within the resource budget%n", moved, testMode.getWord());
+            }
+            int exceeding = ResourceBudget.exceeding(packed, knapsacks, budget);
+            if (exceeding > 0) {
+                listener.getLogger().printf("%d %s still exceed the resource budget%n", exceeding, exceeding == 1 ? "set" : "sets");
+            }
+        }
+        if (packed != sorted) {
+            sorted = SetupCost.unchunk(packed);
+        }
+        if (configuration.getStrategy().isAssignmentRecorded()) {
+            SplitAssignment.record(build, configuration.stageName, sorted, knapsacks);
+        }
+        metrics.add(SplitMetrics.Phase.PACK, start);
 
         long total = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
         for (ParallelTestExecutor.Knapsack k : knapsacks) {
-            total += k.total;
-            max = Math.max(max, k.total);
-            min = Math.min(min, k.total);
+            total += k.total / 1000;
+            max = Math.max(max, k.total / 1000);
+            min = Math.min(min, k.total / 1000);
         }
         long average = total / n;
         long variance = 0;
         for (ParallelTestExecutor.Knapsack k : knapsacks) {
-            variance += pow(k.total - average);
+            variance += pow(k.total / 1000 - average);
         }
         variance /= n;
         long stddev = (long) Math.sqrt(variance);
-        listener.getLogger().printf("%d test %s (%dms) divided into %d sets. Min=%dms, Average=%dms, Max=%dms, stddev=%dms%n",
-                data.size(), testMode.getWord(), total, n, min, average, max, stddev);
+        SplitReport.planned(build, configuration, knapsacks);
+        listener.getLogger().printf("%d test %s (%dms) divided into %d sets. Min=%dms, Average=%dms, Max=%dms, stddev=%dms, predicted p50=%dms, p90=%dms%n",
+                sorted.size(), testMode.getWord(), total, n, min, average, max, stddev,
+                NormalDistribution.makespan(knapsacks, 0.5) / 1000, NormalDistribution.makespan(knapsacks, 0.9) / 1000);
 
+        start = System.nanoTime();
+        SplitTable table = new SplitTable(configuration.failFast ? RiskSpreading.riskFirst(sorted) : sorted, knapsacks, configuration.compressPatterns);
+        if (table.size() < sorted.size()) {
+            listener.getLogger().printf("Designated %d test %s by %d patterns%n", sorted.size(), testMode.getWord(), table.size());
+        }
+        RunOrder runOrder = configuration.getRunOrder();
+        List<List<String>> orders = runOrder == RunOrder.NONE ? null : runOrder.orders(sorted, knapsacks);
         List<InclusionExclusionPattern> r = new ArrayList<>();
+        long patternBytes = 0;
         for (int i = 0; i < n; i++) {
-            ParallelTestExecutor.Knapsack k = knapsacks.get(i);
-            boolean shouldIncludeElements = generateInclusions && i != 0;
-            List<String> elements = sorted.stream().filter(testEntity -> shouldIncludeElements == (testEntity.knapsack == k))
-                    .flatMap(testEntity -> testEntity.getElements().stream())
-                    .collect(Collectors.toList());
-            r.add(new InclusionExclusionPattern(elements, shouldIncludeElements));
+            boolean shouldIncludeElements = configuration.generateInclusions && i != 0;
+            r.add(new InclusionExclusionPattern(table.getList(i, shouldIncludeElements), shouldIncludeElements,
+                    orders == null ? List.of() : orders.get(i), configuration.getLabel(i)));
+            patternBytes += table.length(i, shouldIncludeElements);
         }
+        metrics.add(SplitMetrics.Phase.PATTERNS, start);
+        metrics.setPatternBytes(patternBytes);
+        metrics.report(listener);
         return r;
     }
 
-    @NonNull
-    private static TestResult mayFilterByStageName(@NonNull TestResult tr, @CheckForNull String stageName, @NonNull TaskListener listener) {
-        Run<?,?> run = tr.getRun();
-        if (stageName != null) {
-            listener.getLogger().println("Looking for stage \"" + stageName + "\" in " + run.getFullDisplayName());
-            FlowExecution execution = resolveFlowExecution(run, listener);
-            if (execution != null) {
-                FlowNode stageId = new DepthFirstScanner().findFirstMatch(execution, new StageNamePredicate(stageName));
-                if (stageId != null) {
-                    listener.getLogger().println("Found stage \"" + stageName + "\" in " + run.getFullDisplayName());
-                    tr = ((hudson.tasks.junit.TestResult) tr).getResultForPipelineBlock(stageId.getId());
-                } else {
-                    listener.getLogger().println("No stage \"" + stageName + "\" found in " + run.getFullDisplayName());
-                    var stages = new TreeSet<String>();
-                    for (var n : new DepthFirstScanner().allNodes(execution)) {
-                        var a = n.getPersistentAction(LabelAction.class);
-                        if (a != null) {
-                            stages.add(a.getDisplayName());
-                        }
-                    }
-                    if (stages.isEmpty()) {
-                        listener.getLogger().println("(No possible stages found.)");
-                    } else {
-                        listener.getLogger().println("(Observed stages: " + stages.stream().collect(Collectors.joining(", ")) + ")");
-                    }
+    /**
+     * Reads the resources needed by the tests from a file of the workspace, as described in {@link ResourceBudget}.
+     */
+    private static void tagResources(String resourceFile, List<TestEntity> tests, @CheckForNull FilePath workspace,
+                                     TaskListener listener) throws InterruptedException {
+        if (workspace == null) {
+            listener.getLogger().println("No workspace to read " + resourceFile + " from");
+            return;
+        }
+        try {
+            FilePath file = workspace.child(resourceFile);
+            if (!file.exists()) {
+                listener.getLogger().println("No " + resourceFile + " found in the workspace, so no test needs resources");
+                return;
+            }
+            int tagged = ResourceBudget.tag(tests, file.readToString());
+            listener.getLogger().printf("%d %s resources listed in %s%n", tagged, tagged == 1 ? "test needs" : "tests need", resourceFile);
+        } catch (IOException | IllegalArgumentException x) {
+            listener.getLogger().println("Could not read the resources needed by the tests from " + resourceFile + ": " + x.getMessage());
+        }
+    }
+
+    /**
+     * Looks up the durations of the tests from previous builds, or estimates them from the workspace.
+     * @return tests, in the descending order of the duration; empty if none could be found
+     */
+    static List<TestEntity> findTestEntities(SplitConfiguration configuration, Run<?,?> build, TaskListener listener,
+                                             @CheckForNull FilePath workspace) throws InterruptedException {
+        TestMode testMode = configuration.getTestMode();
+        DurationModel durationModel = configuration.getDurationModel();
+        SplitMetrics metrics = configuration.metrics;
+        enable(build);
+        List<Map<String, TestEntity>> perBuild = new ArrayList<>();
+        long loading = metrics.getNanos(SplitMetrics.Phase.LOAD);
+        long start = System.nanoTime();
+        List<Reference> references = findPreviousReferences(build, listener, durationModel.getBuilds(), metrics);
+        metrics.add(SplitMetrics.Phase.LOOKUP, start);
+        metrics.subtract(SplitMetrics.Phase.LOOKUP, metrics.getNanos(SplitMetrics.Phase.LOAD) - loading);
+        boolean incomplete = false;
+        for (Reference reference : references) {
+            Map<String, TestEntity> buildData = collect(reference, configuration, false, listener);
+            if (buildData != null) {
+                perBuild.add(buildData);
+                incomplete |= reference.incomplete;
+            }
+        }
+        Map<String/*fully qualified class name*/, TestEntity> data;
+        if (!perBuild.isEmpty()) {
+            start = System.nanoTime();
+            data = durationModel.combine(perBuild);
+            metrics.add(SplitMetrics.Phase.COLLECT, start);
+            Run<?, ?> oldest = references.get(references.size() - 1).run;
+            if (incomplete && oldest != null) {
+                fillGaps(data, oldest, configuration, listener);
+            }
+            if (configuration.discoverNewTests && workspace != null) {
+                Set<String> removed = new HashSet<>();
+                Map<String, TestEntity> estimated = testMode.discover(workspace, data, removed, listener);
+                data = mergeWorkspace(data, estimated, removed, listener);
+            }
+        } else {
+            listener.getLogger().println("No record available, try to find test classes");
+            data = testMode.estimate(workspace, listener);
+        }
+
+        // sort in the descending order of the duration
+        start = System.nanoTime();
+        List<TestEntity> sorted = new ArrayList<>(data.values());
+        Collections.sort(sorted);
+        metrics.add(SplitMetrics.Phase.COLLECT, start);
+        metrics.setEntities(sorted.size());
+        return sorted;
+    }
+
+    /**
+     * Builds the test entities of a reference build, restricted to the stage being split if any.
+     * @param stageRequired whether to give up rather than use all the tests of the build if the stage is not found in it
+     * @return tests keyed by {@link TestEntity#getKey()}, or null if the test results could not be loaded
+     */
+    @CheckForNull
+    private static Map<String, TestEntity> collect(Reference reference, SplitConfiguration configuration, boolean stageRequired, TaskListener listener) throws InterruptedException {
+        TestMode testMode = configuration.getTestMode();
+        SplitMetrics metrics = configuration.metrics;
+        String blockId = null;
+        if (configuration.stageName != null) {
+            long start = System.nanoTime();
+            // shared durations are recorded with the names of their blocks rather than their ids
+            blockId = reference.run != null ? findStageBlockId(reference.run, configuration.stageName, listener) : configuration.stageName;
+            metrics.add(SplitMetrics.Phase.STAGE, start);
+            if (blockId == null && stageRequired) {
+                return null;
+            }
+        }
+        long start = System.nanoTime();
+        Map<String, TestEntity> buildData = reference.index != null ? reference.index.collect(testMode, blockId) : null;
+        metrics.add(SplitMetrics.Phase.COLLECT, start);
+        metrics.indexLookup(buildData != null);
+        List<Collection<String>> blocks = new ArrayList<>();
+        if (buildData != null) {
+            blocks = reference.index.blocks(blockId);
+        } else {
+            start = System.nanoTime();
+            TestResult tr = reference.getResult();
+            metrics.add(SplitMetrics.Phase.LOAD, start);
+            if (tr == null) {
+                return null;
+            }
+            if (blockId != null) {
+                start = System.nanoTime();
+                tr = ((hudson.tasks.junit.TestResult) tr).getResultForPipelineBlock(blockId);
+                metrics.add(SplitMetrics.Phase.STAGE, start);
+            }
+            start = System.nanoTime();
+            buildData = collect(tr, testMode, tr.getTotalCount() < PARALLEL_COLLECT_THRESHOLD ? 1 : COLLECT_PARALLELISM);
+            if (tr instanceof hudson.tasks.junit.TestResult) {
+                for (SuiteResult suite : ((hudson.tasks.junit.TestResult) tr).getSuites()) {
+                    blocks.add(suite.getEnclosingBlocks());
+                }
+            }
+            metrics.add(SplitMetrics.Phase.COLLECT, start);
+        }
+        if (reference.run != null) {
+            if (configuration.stageName != null && blockId == null) {
+                reference.incomplete = true;
+            } else {
+                int planned = plannedSplits(reference.run, configuration.stageName);
+                int branches = buildData.isEmpty() ? 0 : branches(blocks);
+                if (branches < planned) {
+                    listener.getLogger().printf("Only %d of the %d splits of %s recorded tests%n", branches, planned, reference.run.getFullDisplayName());
+                    reference.incomplete = true;
+                }
+            }
+        }
+        return buildData;
+    }
+
+    /**
+     * @return the number of splits of the stage the build ran in parallel branches, or 1 if unknown
+     */
+    private static int plannedSplits(Run<?, ?> run, @CheckForNull String stageName) {
+        SplitReport report = run.getAction(SplitReport.class);
+        if (report != null) {
+            List<SplitReport.Plan> plans = report.getPlans();
+            for (int i = plans.size() - 1; i >= 0; i--) {
+                SplitReport.Plan plan = plans.get(i);
+                if (plan.getNodeId() != null && Objects.equals(plan.getStageName(), stageName)) {
+                    return plan.getSize();
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Counts the branches of the innermost {@code parallel} step enclosing all the tests, that is the blocks right inside it.
+     *
+     * @param blocks the enclosing blocks of the tests, innermost first
+     * @return the number of branches which ran tests, or 1 if the tests did not run in parallel
+     */
+    static int branches(Collection<? extends Collection<String>> blocks) {
+        Set<String> common = null;
+        for (Collection<String> enclosing : blocks) {
+            if (common == null) {
+                common = new HashSet<>(enclosing);
+            } else {
+                common.retainAll(enclosing);
+            }
+        }
+        if (common == null || common.isEmpty()) {
+            return 1;
+        }
+        Set<String> branches = new HashSet<>();
+        for (Collection<String> enclosing : blocks) {
+            String previous = null;
+            for (String block : enclosing) {
+                if (common.contains(block)) {
+                    break;
                 }
+                previous = block;
+            }
+            if (previous != null) {
+                branches.add(previous);
+            }
+        }
+        return Math.max(1, branches.size());
+    }
+
+    /**
+     * Looks in the builds preceding the reference builds, whatever their result, for tests missing from the reference builds,
+     * as when a branch crashed before recording its test results or a stage was skipped.
+     * Only called if some reference build is known to be missing tests, as tests deleted since an older build are brought back.
+     * The search stops at the first older build not missing tests itself.
+     *
+     * @param data tests of the reference builds, to which missing tests are added
+     * @param oldest the oldest reference build
+     */
+    private static void fillGaps(Map<String, TestEntity> data, Run<?, ?> oldest, SplitConfiguration configuration, TaskListener listener) throws InterruptedException {
+        long total = 0;
+        for (TestEntity test : data.values()) {
+            total += test.micros;
+        }
+        long filled = 0;
+        Run<?, ?> b = oldest.getPreviousBuild();
+        for (int i = 0; i < GAP_BUILDS_TO_SEARCH && b != null; i++, b = b.getPreviousBuild()) {
+            if (b.isBuilding()) {
+                continue;
+            }
+            Reference reference = load(b, hyperlink(oldest.getParent(), b), listener, configuration.metrics);
+            Map<String, TestEntity> older = reference != null ? collect(reference, configuration, true, listener) : null;
+            if (older == null) {
+                continue;
+            }
+            Map<String, TestEntity> gap = findGap(data, older);
+            if (gap.isEmpty()) {
+                if (!reference.incomplete) {
+                    break;
+                }
+                continue;
+            }
+            long duration = 0;
+            for (TestEntity test : gap.values()) {
+                duration += test.micros;
+            }
+            data.putAll(gap);
+            filled += duration;
+            listener.getLogger().printf("Filled in %d test %s (%dms) missing from the reference builds with build %s%n",
+                    gap.size(), configuration.getTestMode().getWord(), duration / 1000, hyperlink(oldest.getParent(), b));
+            if (!reference.incomplete) {
+                break;
+            }
+        }
+        if (filled > 0) {
+            listener.getLogger().printf("%d%% of the test durations come from the reference builds, %d%% from older builds%n",
+                    100 * total / (total + filled), 100 * filled / (total + filled));
+        }
+    }
+
+    /**
+     * @param data tests known so far
+     * @param older tests of an older build
+     * @return the tests of the older build missing from {@code data}
+     */
+    static Map<String, TestEntity> findGap(Map<String, TestEntity> data, Map<String, TestEntity> older) {
+        Map<String, TestEntity> gap = new TreeMap<>();
+        for (TestEntity test : older.values()) {
+            if (!data.containsKey(test.getKey())) {
+                gap.put(test.getKey(), test);
+            }
+        }
+        return gap;
+    }
+
+    /**
+     * Adds the tests found in the workspace but unknown to the reference builds, with the median duration of the known
+     * tests of their group, or of all known tests, and drops known tests whose source is gone from the workspace.
+     * Tests are matched by their first element, ignoring parameters.
+     *
+     * @param data tests of the reference builds
+     * @param estimated tests found in the workspace
+     * @param removed keys of the tests of the reference builds whose source is gone
+     * @return the merged tests
+     */
+    static Map<String, TestEntity> mergeWorkspace(Map<String, TestEntity> data, Map<String, TestEntity> estimated, Set<String> removed, TaskListener listener) {
+        if (estimated.isEmpty() && removed.isEmpty() || data.isEmpty()) {
+            return data;
+        }
+        Map<String, TestEntity> merged = new TreeMap<>();
+        Set<String> known = new HashSet<>();
+        Map<String, List<Long>> groupDurations = new HashMap<>();
+        List<Long> durations = new ArrayList<>();
+        int dropped = 0;
+        for (TestEntity test : data.values()) {
+            if (removed.contains(test.getKey())) {
+                dropped++;
+                continue;
+            }
+            String group = String.valueOf(test.getGroup());
+            merged.put(test.getKey(), test);
+            known.add(identity(test));
+            groupDurations.computeIfAbsent(group, g -> new ArrayList<>()).add(test.micros);
+            durations.add(test.micros);
+        }
+        long fallback = median(durations);
+        int added = 0;
+        for (TestEntity test : estimated.values()) {
+            if (known.add(identity(test))) {
+                List<Long> group = groupDurations.get(String.valueOf(test.getGroup()));
+                test.micros = group != null ? median(group) : fallback;
+                merged.put(test.getKey(), test);
+                added++;
+            }
+        }
+        listener.getLogger().printf("Found %d tests in the workspace unknown to the reference builds, dropped %d tests no longer found%n", added, dropped);
+        return merged;
+    }
+
+    private static String identity(TestEntity test) {
+        List<String> elements = test.getElements();
+        String element = elements.isEmpty() ? test.getKey() : elements.get(0);
+        int parameters = element.indexOf('[');
+        return parameters == -1 ? element : element.substring(0, parameters);
+    }
+
+    private static long median(List<Long> durations) {
+        if (durations.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(durations);
+        return durations.get(durations.size() / 2);
+    }
+
+    /**
+     * Marks the build as computing splits, so that its test durations are recorded once it completes.
+     */
+    private static void enable(Run<?, ?> build) {
+        if (build.getAction(TestTimingIndex.Enabled.class) == null) {
+            build.addAction(new TestTimingIndex.Enabled());
+        }
+    }
+
+    /**
+     * @return the id of the block of the stage with this name in a previous build, or null if not found
+     */
+    @CheckForNull
+    private static String findStageBlockId(@NonNull Run<?, ?> run, @NonNull String stageName, @NonNull TaskListener listener) {
+        listener.getLogger().println("Looking for stage \"" + stageName + "\" in " + run.getFullDisplayName());
+        FlowExecution execution = resolveFlowExecution(run, listener);
+        if (execution != null) {
+            FlowNode stageId = new DepthFirstScanner().findFirstMatch(execution, new StageNamePredicate(stageName));
+            if (stageId != null) {
+                listener.getLogger().println("Found stage \"" + stageName + "\" in " + run.getFullDisplayName());
+                return stageId.getId();
             } else {
-                listener.getLogger().println("No flow execution found in " + run.getFullDisplayName());
+                listener.getLogger().println("No stage \"" + stageName + "\" found in " + run.getFullDisplayName());
+                var stages = new TreeSet<String>();
+                for (var n : new DepthFirstScanner().allNodes(execution)) {
+                    var a = n.getPersistentAction(LabelAction.class);
+                    if (a != null) {
+                        stages.add(a.getDisplayName());
+                    }
+                }
+                if (stages.isEmpty()) {
+                    listener.getLogger().println("(No possible stages found.)");
+                } else {
+                    listener.getLogger().println("(Observed stages: " + stages.stream().collect(Collectors.joining(", ")) + ")");
+                }
             }
+        } else {
+            listener.getLogger().println("No flow execution found in " + run.getFullDisplayName());
         }
-        return tr;
+        return null;
     }
 
     @CheckForNull
@@ -186,73 +577,227 @@ class Splitter {
     }
 
     /**
-     * Visits the structure inside {@link hudson.tasks.test.TestResult}.
+     * Visits the structure inside {@link hudson.tasks.test.TestResult}, fanning out across packages on large results.
+     * Where several classes yield the same key, the last one in the order of the tree wins, whatever the parallelism.
+     * @param parallelism maximum number of threads to use, 1 to collect on the calling thread
+     * @return tests keyed by {@link TestEntity#getKey()}
+     */
+    static Map<String, TestEntity> collect(TestResult r, TestMode testMode, int parallelism) throws InterruptedException {
+        Map<String, TestEntity> data;
+        if (parallelism <= 1) {
+            data = new Collect(r, testMode, false).compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                data = pool.submit(new Collect(r, testMode, true)).get();
+            } catch (ExecutionException x) {
+                if (x.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) x.getCause();
+                }
+                if (x.getCause() instanceof Error) {
+                    throw (Error) x.getCause();
+                }
+                throw new IllegalStateException(x.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        // sorted once, rather than on every insertion
+        return new TreeMap<>(data);
+    }
+
+    /**
+     * Collects the tests of one node of the result tree into its own map, forking a task per child holding classes.
      */
-    private static void collect(TestResult r, Map<String, TestEntity> data, TestMode testMode) {
-        var queue = new ArrayDeque<TestResult>();
-        queue.push(r);
-        while (!queue.isEmpty()) {
-            var current = queue.pop();
-            if (current instanceof ClassResult) {
-                var classResult = (ClassResult) current;
-                LOGGER.log(Level.FINE, () -> "Retrieving test entities from " + classResult.getFullName());
-                data.putAll(testMode.getTestEntitiesMap(classResult));
-            } else if (current instanceof TabulatedResult) {
-                LOGGER.log(Level.FINE, () -> "Considering children of " + current.getFullName());
-                queue.addAll(((TabulatedResult) current).getChildren());
+    private static final class Collect extends RecursiveTask<Map<String, TestEntity>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TestResult result;
+        private final transient TestMode testMode;
+        private final boolean parallel;
+
+        Collect(TestResult result, TestMode testMode, boolean parallel) {
+            this.result = result;
+            this.testMode = testMode;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected Map<String, TestEntity> compute() {
+            Map<String, TestEntity> data = new HashMap<>();
+            if (result instanceof ClassResult) {
+                LOGGER.log(Level.FINE, () -> "Retrieving test entities from " + result.getFullName());
+                data.putAll(testMode.getTestEntitiesMap((ClassResult) result));
+            } else if (result instanceof TabulatedResult) {
+                LOGGER.log(Level.FINE, () -> "Considering children of " + result.getFullName());
+                List<Collect> children = new ArrayList<>();
+                for (TestResult child : ((TabulatedResult) result).getChildren()) {
+                    children.add(new Collect(child, testMode, parallel));
+                }
+                if (parallel) {
+                    // classes are cheap enough on their own, the tasks are only worth it for packages and above
+                    List<Collect> forked = new ArrayList<>();
+                    for (Collect child : children) {
+                        if (child.result instanceof TabulatedResult && !(child.result instanceof ClassResult)) {
+                            forked.add(child);
+                        }
+                    }
+                    invokeAll(forked);
+                }
+                // merged in the order of the children, so that the outcome does not depend on scheduling
+                for (Collect child : children) {
+                    data.putAll(child.isDone() ? child.join() : child.compute());
+                }
             } else {
-                LOGGER.log(Level.FINE, () -> "Ignoring " + current.getFullName());
+                LOGGER.log(Level.FINE, () -> "Ignoring " + result.getFullName());
             }
+            return data;
         }
     }
 
-    private static TestResult findPreviousTestResult(Run<?, ?> b, TaskListener listener) {
+    private static List<Reference> findPreviousReferences(Run<?, ?> b, TaskListener listener, int count, SplitMetrics metrics) {
         Job<?, ?> project = b.getParent();
         // Look for test results starting with the previous build
-        TestResult result = getTestResult(project, b.getPreviousBuild(), listener);
-        if (result == null) {
+        List<Reference> references = getReferences(project, b.getPreviousBuild(), listener, count, metrics);
+        if (references.isEmpty()) {
             // Look for test results from the target branch builds if this is a change request.
             SCMHead head = SCMHead.HeadByItem.findHead(project);
             if (head instanceof ChangeRequestSCMHead) {
                 SCMHead target = ((ChangeRequestSCMHead) head).getTarget();
                 Item targetBranch = project.getParent().getItem(target.getName());
                 if (targetBranch instanceof Job) {
-                    result = getTestResult(project, ((Job<?, ?>) targetBranch).getLastBuild(), listener);
+                    references = getReferences(project, ((Job<?, ?>) targetBranch).getLastBuild(), listener, count, metrics);
                 }
             }
         }
-        return result;
+        if (references.isEmpty()) {
+            TestTimingIndex shared = TimingStore.lookup(project);
+            if (shared != null) {
+                listener.getLogger().printf("Using test durations shared by %s%n", TimingStore.scopeOf(project));
+                return List.of(new Reference(null, null, shared, null));
+            }
+        }
+        return references;
     }
 
-
+    @CheckForNull
     static TestResult getTestResult(Job<?, ?> originProject, Run<?, ?> b, TaskListener listener) {
-        TestResult result = null;
+        List<Reference> references = getReferences(originProject, b, listener, 1, new SplitMetrics());
+        return references.isEmpty() ? null : references.get(0).getResult();
+    }
+
+    /**
+     * Looks for up to {@code count} completed builds with loadable test results, starting from {@code b}.
+     * Builds with a {@link TestTimingIndex} are used without loading their test results.
+     * @return reference builds, newest first
+     */
+    static List<Reference> getReferences(Job<?, ?> originProject, Run<?, ?> b, TaskListener listener, int count, SplitMetrics metrics) {
+        List<Reference> references = new ArrayList<>();
         for (int i = 0; i < NUMBER_OF_BUILDS_TO_SEARCH; i++) {// limit the search to a small number to avoid loading too much
             if (b == null) break;
             if (RESULTS_OF_BUILDS_TO_CONSIDER.contains(b.getResult()) && !b.isBuilding()) {
-                String hyperlink = ModelHyperlinkNote.encodeTo('/' + b.getUrl(), originProject != b.getParent() ? b.getFullDisplayName() : b.getDisplayName());
-                try {
-                    AbstractTestResultAction<?> tra = b.getAction(AbstractTestResultAction.class);
-                    if (tra != null) {
-                        Object o = tra.getResult();
-                        if (o instanceof TestResult) {
-                            TestResult tr = (TestResult) o;
-                            if (tr.getTotalCount() == 0) {
-                                listener.getLogger().printf("Build %s has no loadable test results (supposed count %d), skipping%n", hyperlink, tra.getTotalCount());
-                            } else {
-                                listener.getLogger().printf("Using build %s as reference%n", hyperlink);
-                                result = tr;
-                                break;
-                            }
-                        }
+                String hyperlink = hyperlink(originProject, b);
+                Reference reference = load(b, hyperlink, listener, metrics);
+                if (reference != null) {
+                    listener.getLogger().printf("Using build %s as reference%n", hyperlink);
+                    references.add(reference);
+                    if (references.size() >= count) {
+                        break;
                     }
-                } catch (RuntimeException e) {
-                    e.printStackTrace(listener.error("Failed to load (corrupt?) build %s, skipping%n", hyperlink));
+                } else {
+                    metrics.buildSkipped();
                 }
+            } else {
+                metrics.buildSkipped();
             }
             b = b.getPreviousBuild();
         }
-        return result;
+        return references;
+    }
+
+    private static String hyperlink(Job<?, ?> originProject, Run<?, ?> b) {
+        return ModelHyperlinkNote.encodeTo('/' + b.getUrl(), originProject != b.getParent() ? b.getFullDisplayName() : b.getDisplayName());
+    }
+
+    /**
+     * @return the test results of the build, or null if it has none that can be loaded
+     */
+    @CheckForNull
+    private static Reference load(Run<?, ?> b, String hyperlink, TaskListener listener, SplitMetrics metrics) {
+        long start = System.nanoTime();
+        try {
+            AbstractTestResultAction<?> tra = b.getAction(AbstractTestResultAction.class);
+            if (tra != null) {
+                TestTimingIndex index = loadIndex(b);
+                if (index != null && index.getCaseCount() > 0) {
+                    return new Reference(b, tra, index, null);
+                }
+                Object o = tra.getResult();
+                if (o instanceof TestResult) {
+                    TestResult tr = (TestResult) o;
+                    if (tr.getTotalCount() == 0) {
+                        listener.getLogger().printf("Build %s has no loadable test results (supposed count %d), skipping%n", hyperlink, tra.getTotalCount());
+                    } else {
+                        return new Reference(b, tra, null, tr);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace(listener.error("Failed to load (corrupt?) build %s, skipping%n", hyperlink));
+        } finally {
+            metrics.add(SplitMetrics.Phase.LOAD, start);
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static TestTimingIndex loadIndex(Run<?, ?> b) {
+        try {
+            return TestTimingIndex.load(b);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load test timings of " + b + ", falling back to test results", e);
+            return null;
+        }
+    }
+
+    /**
+     * A previous build whose test durations are used to plan the splits.
+     */
+    static final class Reference {
+        @CheckForNull
+        final Run<?, ?> run;
+        @CheckForNull
+        private final AbstractTestResultAction<?> action;
+        @CheckForNull
+        final TestTimingIndex index;
+        @CheckForNull
+        private TestResult result;
+        /**
+         * Whether the tests of the stage, or of some of its splits, are known to be missing from the build.
+         */
+        boolean incomplete;
+
+        Reference(@CheckForNull Run<?, ?> run, @CheckForNull AbstractTestResultAction<?> action, @CheckForNull TestTimingIndex index, @CheckForNull TestResult result) {
+            this.run = run;
+            this.action = action;
+            this.index = index;
+            this.result = result;
+        }
+
+        /**
+         * @return the full test result, loaded only when needed
+         */
+        @CheckForNull
+        TestResult getResult() {
+            if (result == null && action != null) {
+                Object o = action.getResult();
+                if (o instanceof TestResult) {
+                    result = (TestResult) o;
+                }
+            }
+            return result;
+        }
     }
 
     private static class StageNamePredicate implements Predicate<FlowNode> {
@@ -0,0 +1,143 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Keeps each test in the split it was assigned to by the previous build, and only moves tests
+ * out of the heaviest splits until the longest one is within a tolerance of the average.
+ * New tests are added greedily.
+ * <p>
+ * This way split {@code i} runs mostly the same tests from one build to the next,
+ * so that whatever an agent keeps between builds of the same split stays relevant.
+ * </p>
+ */
+public class StickySplitStrategy extends SplitStrategy {
+
+    private int tolerance = 10;
+
+    @DataBoundConstructor
+    public StickySplitStrategy() {}
+
+    public int getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @param tolerance percentage by which the longest knapsack may exceed the average before tests are moved
+     */
+    @DataBoundSetter
+    public void setTolerance(int tolerance) {
+        this.tolerance = Math.max(0, tolerance);
+    }
+
+    @Override
+    void pack(List<TestEntity> sorted, List<Knapsack> knapsacks) {
+        GreedySplitStrategy.pack(sorted, knapsacks, getDeviations());
+    }
+
+    @Override
+    void pack(List<TestEntity> sorted, List<Knapsack> knapsacks, Run<?, ?> build, @CheckForNull String stageName, TaskListener listener) {
+        Map<String, Integer> previous = SplitAssignment.load(build, stageName);
+        if (previous == null) {
+            listener.getLogger().println("No split assignment recorded by previous builds, packing the tests from scratch");
+            pack(sorted, knapsacks);
+            return;
+        }
+        int moved = pack(sorted, knapsacks, previous, getDeviations(), tolerance);
+        int kept = 0;
+        for (TestEntity test : sorted) {
+            Integer split = previous.get(test.getKey());
+            if (split != null && split < knapsacks.size() && knapsacks.get(split) == test.knapsack) {
+                kept++;
+            }
+        }
+        listener.getLogger().printf("Kept %d of %d tests in the same set as the previous build, moved %d to balance the sets%n",
+                kept, sorted.size(), moved);
+    }
+
+    /**
+     * @param previous the split of each test key in the previous build
+     * @return the number of tests moved to balance the knapsacks
+     */
+    static int pack(List<TestEntity> sorted, List<Knapsack> knapsacks, Map<String, Integer> previous, double deviations, int tolerance) {
+        List<TestEntity> unassigned = new ArrayList<>();
+        long total = 0;
+        long longest = 0;
+        for (TestEntity test : sorted) {
+            Integer split = previous.get(test.getKey());
+            if (split != null && split < knapsacks.size()) {
+                knapsacks.get(split).add(test);
+            } else {
+                unassigned.add(test);
+            }
+            total += test.micros;
+            longest = Math.max(longest, Knapsack.predict(test.micros, test.variance, deviations));
+        }
+        GreedySplitStrategy.pack(unassigned, knapsacks, deviations);
+        long average = total / knapsacks.size();
+        long limit = Math.max(longest, average + average * tolerance / 100);
+        int moved = 0;
+        // each move narrows the gap between two knapsacks, so this terminates; the bound is only a safeguard
+        while (moved < sorted.size()) {
+            Knapsack heaviest = null;
+            Knapsack lightest = null;
+            for (Knapsack k : knapsacks) {
+                if (heaviest == null || k.predicted(deviations) > heaviest.predicted(deviations)) {
+                    heaviest = k;
+                }
+                if (lightest == null || k.predicted(deviations) < lightest.predicted(deviations)) {
+                    lightest = k;
+                }
+            }
+            if (heaviest.predicted(deviations) <= limit) {
+                break;
+            }
+            // the test closest to half the gap evens out the two knapsacks best in a single move
+            long gap = heaviest.total - lightest.total;
+            List<Knapsack> targets = List.of(lightest);
+            Map<Knapsack, List<TestEntity>> alone = Map.of(lightest, List.of());
+            TestEntity best = null;
+            Knapsack.Move bestMove = null;
+            for (TestEntity test : sorted) {
+                if (test.knapsack == heaviest && test.micros > 0 && test.micros < gap) {
+                    Knapsack.Move move = Knapsack.move(test, targets, alone, deviations, (fromLoad, toLoad, partner) -> Math.abs(fromLoad - toLoad));
+                    if (move != null && (bestMove == null || move.cost < bestMove.cost)) {
+                        best = test;
+                        bestMove = move;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            bestMove.apply(best, alone);
+            moved++;
+        }
+        return moved;
+    }
+
+    @Override
+    boolean isAssignmentRecorded() {
+        return true;
+    }
+
+    @Symbol("sticky")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<SplitStrategy> {
+        @Override
+        public String getDisplayName() {
+            return "Keep tests in the batch they ran in before";
+        }
+    }
+}
@@ -19,7 +19,14 @@ public class TestCase extends TestEntity {
         } else {
             this.output = cr.getName();
         }
-        this.duration = (long)(cr.getDuration()*1000);  // milliseconds is a good enough precision for us
+        setDuration(cr.getDuration());
+        this.risk = cr.isFailed() ? 1 : 0;
+    }
+
+    public TestCase(TestTimingIndex.CaseTiming ct, boolean withClassName) {
+        this.output = withClassName ? ct.getFullName() : ct.getName();
+        setDuration(ct.getDuration());
+        this.risk = ct.isFailed() ? 1 : 0;
     }
 
     @Override
@@ -1,8 +1,13 @@
 package org.jenkinsci.plugins.parallel_test_executor;
 
+import hudson.tasks.junit.CaseResult;
 import hudson.tasks.junit.ClassResult;
+import hudson.tasks.junit.SuiteResult;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Execution time of a specific test class.
@@ -12,19 +17,60 @@ public class TestClass extends TestEntity {
     final String className;
 
     public TestClass(ClassResult cr) {
+        this.className = getClassName(cr);
+        setDuration(cr.getDuration());
+        this.risk = cr.getFailCount() > 0 ? 1 : 0;
+    }
+
+    public TestClass(TestTimingIndex.ClassTiming ct) {
+        this.className = ct.getName();
+        setDuration(ct.getDuration());
+        this.risk = ct.getCases().stream().anyMatch(TestTimingIndex.CaseTiming::isFailed) ? 1 : 0;
+    }
+
+    //for test estimation for first run
+    public TestClass(String className){
+        this(className, 10);
+    }
+
+    public TestClass(String className, long duration) {
+        this.className = className;
+        this.micros = duration * 1000;
+    }
+
+    static String getClassName(ClassResult cr) {
         String pkgName = cr.getParent().getName();
         if (pkgName.equals("(root)"))   // UGH
             pkgName = "";
         else
             pkgName += '.';
-        this.className = pkgName+cr.getName();
-        this.duration = (long)(cr.getDuration()*1000);  // milliseconds is a good enough precision for us
+        return pkgName+cr.getName();
     }
 
-    //for test estimation for first run
-    public TestClass(String className){
-        this.className = className;
-        this.duration = 10;
+    /**
+     * @return the time the suites of the class spent outside of its test cases, such as in class-level setup, in seconds;
+     *         suites also running other classes are not counted
+     */
+    public static float getSetupDuration(ClassResult cr) {
+        String className = getClassName(cr);
+        Set<SuiteResult> suites = Collections.newSetFromMap(new IdentityHashMap<>());
+        float setup = 0;
+        for (CaseResult cs : cr.getChildren()) {
+            SuiteResult suite = cs.getSuiteResult();
+            if (suite == null || !suites.add(suite)) {
+                continue;
+            }
+            float cases = 0;
+            boolean own = true;
+            for (CaseResult c : suite.getCases()) {
+                cases += c.getDuration();
+                own &= className.equals(c.getClassName());
+            }
+            if (own) {
+                setup += Math.max(0, suite.getDuration() - cases);
+            }
+        }
+        return setup;
     }
 
     @Override
@@ -38,6 +84,20 @@ public class TestClass extends TestEntity {
         return List.of(sanitizedClassName +".java", sanitizedClassName +".class");
     }
 
+    @Override
+    public String getGroup() {
+        var sanitizedClassName = className.replace('.', '/');
+        int slash = sanitizedClassName.lastIndexOf('/');
+        return slash == -1 ? "" : sanitizedClassName.substring(0, slash);
+    }
+
+    @Override
+    public List<String> getGroupElements() {
+        var group = getGroup();
+        var prefix = group.isEmpty() ? "" : group + "/";
+        return List.of(prefix + "*.java", prefix + "*.class");
+    }
+
     @Override
     public String toString() {
         return className +".extension";
@@ -5,12 +5,17 @@ import hudson.FilePath;
 import hudson.Util;
 import hudson.console.ModelHyperlinkNote;
 import hudson.model.AbstractBuild;
+import hudson.model.FileParameterValue;
 import hudson.model.InvisibleAction;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
 import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import jenkins.MasterToSlaveFileCallable;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.Copy;
@@ -22,6 +27,7 @@ import org.apache.tools.ant.taskdefs.Copy;
  */
 class TestCollector extends InvisibleAction implements Serializable {
     private static final long serialVersionUID = -592264249944063364L;
+    private static final Pattern SPLIT_FILE = Pattern.compile("split[.](\\d+)[.].*");
 
     // none of this is meant to persist
     private final transient AbstractBuild<?,?> collector;
@@ -117,4 +123,26 @@ class TestCollector extends InvisibleAction implements Serializable {
             e.printStackTrace(listener.error("Failed to aggregate test reports for "+collector.getFullDisplayName()));
         }
     }
+
+    /**
+     * Records the duration of the sub build as the actual duration of the split it ran in the {@link SplitReport} of the master.
+     */
+    public void reportDuration(AbstractBuild<?,?> build) {
+        if (collector==null)    return;
+        SplitReport report = collector.getAction(SplitReport.class);
+        if (report==null)       return;
+        int split = ordinal - 1;
+        ParametersAction parameters = build.getAction(ParametersAction.class);
+        if (parameters != null) {
+            ParameterValue value = parameters.getParameter(testExecutor.getPatternFile());
+            if (value instanceof FileParameterValue) {
+                // sub builds are not necessarily triggered in the order of the splits
+                Matcher m = SPLIT_FILE.matcher(((FileParameterValue) value).getOriginalFileName());
+                if (m.matches()) {
+                    split = Integer.parseInt(m.group(1));
+                }
+            }
+        }
+        report.actual(split, build.getDuration());
+    }
 }
@@ -1,7 +1,9 @@
 package org.jenkinsci.plugins.parallel_test_executor;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.List;
+import java.util.Map;
 import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
 
 /**
@@ -10,7 +12,27 @@ import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsac
 @SuppressFBWarnings(value="EQ_COMPARETO_USE_OBJECT_EQUALS", justification="Cf. justification in Knapsack.")
 public abstract class TestEntity implements Comparable<TestEntity> {
 
-    protected long duration;
+    /**
+     * Duration in microseconds, so that tests shorter than a millisecond still weigh something.
+     */
+    protected long micros;
+    /**
+     * Variance of the duration across reference builds in square milliseconds, if known.
+     */
+    protected long variance;
+    /**
+     * Estimated probability that this test fails, from the reference builds.
+     */
+    protected double risk;
+    /**
+     * Time in milliseconds every split running any test of {@link #getGroup()} spends once, such as in class-level setup.
+     */
+    protected long setup;
+    /**
+     * Amount of each resource this test needs while it runs, such as memory, if known.
+     */
+    @CheckForNull
+    protected Map<String, Long> resources;
     /**
      * Knapsack that this test class belongs to.
      */
@@ -18,13 +40,46 @@ public abstract class TestEntity implements Comparable<TestEntity> {
 
     protected TestEntity() {}
 
+    /**
+     * @return the duration in milliseconds
+     */
     public long getDuration() {
-        return duration;
+        return micros / 1000;
+    }
+
+    public long getVariance() {
+        return variance;
+    }
+
+    public double getRisk() {
+        return risk;
+    }
+
+    public long getSetup() {
+        return setup;
+    }
+
+    /**
+     * @return the amount of each resource this test needs while it runs, empty if none
+     */
+    public Map<String, Long> getResources() {
+        return resources == null ? Map.of() : resources;
+    }
+
+    public long getMicros() {
+        return micros;
+    }
+
+    /**
+     * Sets the duration from seconds, keeping microseconds.
+     */
+    protected void setDuration(double seconds) {
+        micros = (long) (seconds * 1_000_000);
     }
 
     @Override
     public int compareTo(TestEntity that) {
-        long l = this.duration - that.duration;
+        long l = this.micros - that.micros;
         // sort them in the descending order
         if (l>0)    return -1;
         if (l<0)    return 1;
@@ -34,4 +89,20 @@ public abstract class TestEntity implements Comparable<TestEntity> {
     public abstract String getKey();
     
     public abstract List<String> getElements();
+
+    /**
+     * @return key of the group of tests this test belongs to, such as its package,
+     *         if all tests of the group can be designated at once by {@link #getGroupElements()}
+     */
+    @CheckForNull
+    public String getGroup() {
+        return null;
+    }
+
+    /**
+     * @return elements designating all the tests of {@link #getGroup()}, including tests unknown so far
+     */
+    public List<String> getGroupElements() {
+        return List.of();
+    }
 }
@@ -0,0 +1,188 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.AbortException;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queues of tests of a build, from which parallel branches claim batches until they are empty.
+ * <p>
+ * Tests are handed out longest first, in batches of about half of the remaining duration divided by the
+ * number of workers, so that batches shrink towards the end and no branch is left with a long tail.
+ * Once all known tests are claimed, one last batch excludes them all, to run tests unknown to previous builds.
+ * </p>
+ * <p>
+ * Only the queues themselves are saved with the build; their tests are written once to a file in the build directory,
+ * at the start of which the progress of the queue is updated in place as batches are claimed.
+ * </p>
+ */
+public final class TestQueueAction extends InvisibleAction {
+
+    private final Map<String, TestQueue> queues = new LinkedHashMap<>();
+
+    static TestQueueAction of(Run<?, ?> build) {
+        synchronized (build) {
+            TestQueueAction action = build.getAction(TestQueueAction.class);
+            if (action == null) {
+                action = new TestQueueAction();
+                build.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Creates or replaces a queue.
+     *
+     * @param word what the tests are called in logs, as in {@link org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode#getWord}
+     * @param sorted tests, in the order to hand them out, usually the descending order of the duration
+     */
+    synchronized void create(Run<?, ?> build, String name, String word, int workers, List<TestEntity> sorted) throws IOException {
+        TestQueue previous = queues.get(name);
+        TestQueue queue = new TestQueue(previous != null ? previous.file : "test-queue-" + queues.size() + ".bin", word, workers);
+        queue.entries = new ArrayList<>();
+        for (TestEntity test : sorted) {
+            queue.entries.add(new Entry(test.getElements(), test.getDuration()));
+            queue.remaining += test.getDuration();
+        }
+        queue.size = queue.entries.size();
+        queue.write(build);
+        queues.put(name, queue);
+        build.save();
+    }
+
+    /**
+     * @return the next batch of the queue, or null if it is exhausted
+     */
+    @CheckForNull
+    synchronized InclusionExclusionPattern claim(Run<?, ?> build, String name, TaskListener listener) throws IOException {
+        TestQueue queue = queues.get(name);
+        if (queue == null) {
+            throw new AbortException("No test queue named " + name + " in this build, use testQueue first");
+        }
+        List<Entry> entries = queue.read(build);
+        InclusionExclusionPattern batch;
+        if (queue.next < queue.size) {
+            // guided self-scheduling: take a share of what remains, which shrinks as the queue empties
+            long target = queue.remaining / (2L * queue.workers);
+            List<String> elements = new ArrayList<>();
+            long duration = 0;
+            int count = 0;
+            do {
+                Entry entry = entries.get(queue.next++);
+                elements.addAll(entry.elements);
+                duration += entry.duration;
+                count++;
+            } while (queue.next < queue.size && duration < target);
+            queue.remaining -= duration;
+            listener.getLogger().printf("Claimed %d test %s (%dms) from %s, %d (%dms) remaining%n",
+                    count, queue.word, duration, name, queue.size - queue.next, queue.remaining);
+            batch = new InclusionExclusionPattern(elements, true);
+        } else if (!queue.finished) {
+            queue.finished = true;
+            List<String> elements = new ArrayList<>();
+            for (Entry entry : entries) {
+                elements.addAll(entry.elements);
+            }
+            listener.getLogger().printf("Claimed the test %s of %s not known from previous builds%n", queue.word, name);
+            batch = new InclusionExclusionPattern(elements, false);
+        } else {
+            return null;
+        }
+        queue.writeProgress(build);
+        return batch;
+    }
+
+    private static final class TestQueue {
+        private final String file;
+        private final String word;
+        private final int workers;
+        private int size;
+        // progress, kept at the start of the file rather than saved with the build on every claim
+        private transient int next;
+        private transient long remaining;
+        private transient boolean finished;
+        private transient List<Entry> entries;
+
+        TestQueue(String file, String word, int workers) {
+            this.file = file;
+            this.word = word;
+            this.workers = workers;
+        }
+
+        /**
+         * Loads the tests and the progress of the queue, if not loaded yet.
+         */
+        List<Entry> read(Run<?, ?> build) throws IOException {
+            if (entries == null) {
+                List<Entry> loaded = new ArrayList<>(size);
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(new File(build.getRootDir(), file).toPath())))) {
+                    next = in.readInt();
+                    remaining = in.readLong();
+                    finished = in.readBoolean();
+                    for (int i = 0; i < size; i++) {
+                        long duration = in.readLong();
+                        int count = in.readInt();
+                        List<String> elements = new ArrayList<>(count);
+                        for (int j = 0; j < count; j++) {
+                            elements.add(TestTimingIndex.readString(in));
+                        }
+                        loaded.add(new Entry(elements, duration));
+                    }
+                }
+                entries = loaded;
+            }
+            return entries;
+        }
+
+        void write(Run<?, ?> build) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(new File(build.getRootDir(), file).toPath())))) {
+                out.writeInt(next);
+                out.writeLong(remaining);
+                out.writeBoolean(finished);
+                for (Entry entry : entries) {
+                    out.writeLong(entry.duration);
+                    out.writeInt(entry.elements.size());
+                    for (String element : entry.elements) {
+                        TestTimingIndex.writeString(out, element);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Updates the progress at the start of the file, leaving the tests as written.
+         */
+        void writeProgress(Run<?, ?> build) throws IOException {
+            try (RandomAccessFile out = new RandomAccessFile(new File(build.getRootDir(), file), "rw")) {
+                out.writeInt(next);
+                out.writeLong(remaining);
+                out.writeBoolean(finished);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final List<String> elements;
+        final long duration;
+
+        Entry(List<String> elements, long duration) {
+            this.elements = elements;
+            this.duration = duration;
+        }
+    }
+}
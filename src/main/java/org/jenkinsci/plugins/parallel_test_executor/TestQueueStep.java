@@ -0,0 +1,160 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.List;
+import java.util.Set;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Queues the tests of the build, longest first, for parallel branches to claim with {@link ClaimTestsStep}.
+ * Returns the number of branches to run.
+ */
+public final class TestQueueStep extends Step {
+
+    static final String DEFAULT_NAME = "tests";
+
+    private final Parallelism parallelism;
+
+    private String name = DEFAULT_NAME;
+
+    private String stage;
+
+    private TestMode testMode;
+
+    private DurationModel durationModel;
+
+    private boolean failFast;
+
+    @DataBoundConstructor
+    public TestQueueStep(Parallelism parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Parallelism getParallelism() {
+        return parallelism;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @DataBoundSetter
+    public void setName(String name) {
+        this.name = Util.fixEmpty(name) == null ? DEFAULT_NAME : name;
+    }
+
+    @SuppressWarnings("unused") // jelly
+    public TestMode getTestMode() {
+        return TestMode.fixDefault(testMode);
+    }
+
+    @DataBoundSetter
+    public void setTestMode(TestMode testMode) {
+        this.testMode = testMode;
+    }
+
+    @SuppressWarnings("unused") // jelly
+    public DurationModel getDurationModel() {
+        return DurationModel.fixDefault(durationModel);
+    }
+
+    @DataBoundSetter
+    public void setDurationModel(DurationModel durationModel) {
+        this.durationModel = durationModel;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast whether to queue tests which failed in the reference builds first
+     */
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    @DataBoundSetter
+    public void setStage(String stage) {
+        this.stage = Util.fixEmpty(stage);
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, this);
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(TaskListener.class, Run.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "testQueue";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Queue Tests for Parallel Branches";
+        }
+    }
+
+    private static final class Execution extends SynchronousStepExecution<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TestQueueStep step;
+
+        Execution(StepContext context, TestQueueStep step) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Integer run() throws Exception {
+            StepContext context = getContext();
+            Run<?, ?> build = context.get(Run.class);
+            TaskListener listener = context.get(TaskListener.class);
+            FilePath path = context.get(FilePath.class);
+
+            SplitConfiguration configuration = new SplitConfiguration(step.parallelism);
+            configuration.testMode = step.testMode;
+            configuration.durationModel = step.durationModel;
+            configuration.stageName = step.stage;
+            List<TestEntity> sorted = Splitter.findTestEntities(configuration, build, listener, path);
+            int workers = Math.max(1, step.parallelism.calculate(sorted, configuration.getStrategy(), build, listener));
+            TestQueueAction.of(build).create(build, step.name, configuration.getTestMode().getWord(), workers, step.failFast ? RiskSpreading.riskFirst(sorted) : sorted);
+            long total = 0;
+            for (TestEntity test : sorted) {
+                total += test.getDuration();
+            }
+            listener.getLogger().printf("%d test %s (%dms) queued as %s for %d branches%n",
+                    sorted.size(), configuration.getTestMode().getWord(), total, step.name, workers);
+            configuration.metrics.report(listener);
+            return workers;
+        }
+
+    }
+
+}
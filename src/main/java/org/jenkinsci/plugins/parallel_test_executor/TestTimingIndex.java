@@ -0,0 +1,411 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.ClassResult;
+import hudson.tasks.junit.PackageResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+import hudson.tasks.test.AbstractTestResultAction;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
+
+/**
+ * Durations of the tests of one build, stored next to the build in a compact binary form,
+ * so that planning does not need to load the full test result with its output and stack traces.
+ * <p>
+ * Strings are written once into a dictionary and referenced by index. Each class records the
+ * Pipeline blocks enclosing its suites, so that tests can be filtered by stage.
+ * </p>
+ */
+public final class TestTimingIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(TestTimingIndex.class.getName());
+
+    static final String FILE_NAME = "parallel-test-timings.bin";
+
+    private static final int MAGIC = 0x50544933;
+
+    private final List<ClassTiming> classes;
+
+    private final int caseCount;
+
+    TestTimingIndex(List<ClassTiming> classes) {
+        this.classes = classes;
+        int count = 0;
+        for (ClassTiming c : classes) {
+            count += c.cases.size();
+        }
+        this.caseCount = count;
+    }
+
+    public List<ClassTiming> getClasses() {
+        return Collections.unmodifiableList(classes);
+    }
+
+    public int getCaseCount() {
+        return caseCount;
+    }
+
+    /**
+     * Builds the test entities of this build.
+     *
+     * @param blockId if not null, only consider classes run within this Pipeline block
+     * @return a map of test entities keyed by their unique key,
+     *         or null if the test mode or the block filter requires the full test result
+     */
+    @CheckForNull
+    Map<String, TestEntity> collect(@NonNull TestMode testMode, @CheckForNull String blockId) {
+        Map<String, TestEntity> data = new TreeMap<>();
+        for (ClassTiming c : classes) {
+            if (blockId != null && !c.blocks.contains(blockId)) {
+                continue;
+            }
+            if (blockId != null && c.mixedBlocks) {
+                return null;
+            }
+            Map<String, TestEntity> entities = testMode.getTestEntitiesMap(c);
+            if (entities == null) {
+                return null;
+            }
+            data.putAll(entities);
+        }
+        return data;
+    }
+
+    /**
+     * @param blockId if not null, only consider classes run within this Pipeline block
+     * @return the enclosing blocks, innermost first, of each class whose cases all ran within the same blocks
+     */
+    @NonNull
+    List<Collection<String>> blocks(@CheckForNull String blockId) {
+        List<Collection<String>> blocks = new ArrayList<>();
+        for (ClassTiming c : classes) {
+            if (!c.mixedBlocks && (blockId == null || c.blocks.contains(blockId))) {
+                blocks.add(c.blocks);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * @return the index recorded for this build, if any
+     */
+    @CheckForNull
+    static TestTimingIndex load(@NonNull Run<?, ?> run) throws IOException {
+        File rootDir = run.getRootDir();
+        if (rootDir == null) {
+            return null;
+        }
+        File file = new File(rootDir, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unexpected format of " + file);
+            }
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+            List<Set<String>> blockSets = new ArrayList<>();
+            int blockSetCount = in.readInt();
+            for (int i = 0; i < blockSetCount; i++) {
+                Set<String> blocks = new LinkedHashSet<>();
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    blocks.add(strings[in.readInt()]);
+                }
+                blockSets.add(Collections.unmodifiableSet(blocks));
+            }
+            int classCount = in.readInt();
+            List<ClassTiming> classes = new ArrayList<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                String name = strings[in.readInt()];
+                float duration = in.readFloat();
+                float setup = in.readFloat();
+                Set<String> blocks = blockSets.get(in.readInt());
+                boolean mixedBlocks = in.readBoolean();
+                int size = in.readInt();
+                List<CaseTiming> cases = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    cases.add(new CaseTiming(strings[in.readInt()], strings[in.readInt()], in.readFloat(), in.readByte()));
+                }
+                classes.add(new ClassTiming(name, duration, setup, blocks, mixedBlocks, cases));
+            }
+            return new TestTimingIndex(classes);
+        }
+    }
+
+    /**
+     * Records the durations found in the test result of this build.
+     */
+    static void write(@NonNull Run<?, ?> run, @NonNull TestResult result) throws IOException {
+        Map<String, Integer> strings = new HashMap<>();
+        Map<Set<String>, Integer> blockSets = new HashMap<>();
+        List<ClassTiming> classes = new ArrayList<>();
+        for (PackageResult pkg : result.getChildren()) {
+            for (ClassResult cr : pkg.getChildren()) {
+                Set<String> blocks = null;
+                boolean mixedBlocks = false;
+                List<CaseTiming> cases = new ArrayList<>();
+                for (CaseResult cs : cr.getChildren()) {
+                    cases.add(new CaseTiming(cs.getClassName(), cs.getName(), cs.getDuration(), CaseTiming.status(cs)));
+                    SuiteResult suite = cs.getSuiteResult();
+                    Set<String> suiteBlocks = suite == null ? new LinkedHashSet<>() : new LinkedHashSet<>(suite.getEnclosingBlocks());
+                    if (blocks == null) {
+                        blocks = suiteBlocks;
+                    } else if (!blocks.equals(suiteBlocks)) {
+                        mixedBlocks = true;
+                        blocks.addAll(suiteBlocks);
+                    }
+                }
+                classes.add(new ClassTiming(TestClass.getClassName(cr), cr.getDuration(), TestClass.getSetupDuration(cr), blocks == null ? new LinkedHashSet<>() : blocks, mixedBlocks, cases));
+            }
+        }
+        List<String> dictionary = new ArrayList<>();
+        List<Set<String>> blockSetList = new ArrayList<>();
+        for (ClassTiming c : classes) {
+            intern(c.name, strings, dictionary);
+            for (String block : c.blocks) {
+                intern(block, strings, dictionary);
+            }
+            if (!blockSets.containsKey(c.blocks)) {
+                blockSets.put(c.blocks, blockSetList.size());
+                blockSetList.add(c.blocks);
+            }
+            for (CaseTiming cs : c.cases) {
+                intern(cs.className, strings, dictionary);
+                intern(cs.name, strings, dictionary);
+            }
+        }
+        File file = new File(run.getRootDir(), FILE_NAME);
+        File tmp = new File(run.getRootDir(), FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(dictionary.size());
+            for (String s : dictionary) {
+                writeString(out, s);
+            }
+            out.writeInt(blockSetList.size());
+            for (Set<String> blocks : blockSetList) {
+                out.writeInt(blocks.size());
+                for (String block : blocks) {
+                    out.writeInt(strings.get(block));
+                }
+            }
+            out.writeInt(classes.size());
+            for (ClassTiming c : classes) {
+                out.writeInt(strings.get(c.name));
+                out.writeFloat(c.duration);
+                out.writeFloat(c.setup);
+                out.writeInt(blockSets.get(c.blocks));
+                out.writeBoolean(c.mixedBlocks);
+                out.writeInt(c.cases.size());
+                for (CaseTiming cs : c.cases) {
+                    out.writeInt(strings.get(cs.className));
+                    out.writeInt(strings.get(cs.name));
+                    out.writeFloat(cs.duration);
+                    out.writeByte(cs.status);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 encoding,
+     * as test names, such as those of parameterized tests, may not fit {@link DataOutputStream#writeUTF}.
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Unexpected string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void intern(String s, Map<String, Integer> strings, List<String> dictionary) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, dictionary.size());
+            dictionary.add(s);
+        }
+    }
+
+    /**
+     * Recorded durations of a test class, as found in {@link ClassResult}.
+     */
+    public static final class ClassTiming {
+        private final String name;
+        private final float duration;
+        private final float setup;
+        private final Set<String> blocks;
+        private final boolean mixedBlocks;
+        private final List<CaseTiming> cases;
+
+        ClassTiming(String name, float duration, float setup, Set<String> blocks, boolean mixedBlocks, List<CaseTiming> cases) {
+            this.name = name;
+            this.duration = duration;
+            this.setup = setup;
+            this.blocks = blocks;
+            this.mixedBlocks = mixedBlocks;
+            this.cases = cases;
+        }
+
+        /**
+         * @return the fully qualified class name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the duration in seconds
+         */
+        public float getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return the time spent outside of the test cases, in seconds
+         * @see TestClass#getSetupDuration
+         */
+        public float getSetupDuration() {
+            return setup;
+        }
+
+        public List<CaseTiming> getCases() {
+            return Collections.unmodifiableList(cases);
+        }
+    }
+
+    /**
+     * Recorded duration of a test case, as found in {@link CaseResult}.
+     */
+    public static final class CaseTiming {
+        static final byte PASSED = 0, FAILED = 1, SKIPPED = 2;
+
+        private final String className;
+        private final String name;
+        private final float duration;
+        private final byte status;
+
+        CaseTiming(String className, String name, float duration, byte status) {
+            this.className = className;
+            this.name = name;
+            this.duration = duration;
+            this.status = status;
+        }
+
+        static byte status(CaseResult cr) {
+            return cr.isSkipped() ? SKIPPED : cr.isFailed() ? FAILED : PASSED;
+        }
+
+        /**
+         * @see CaseResult#getClassName()
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @see CaseResult#getName()
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @see CaseResult#getFullName()
+         */
+        public String getFullName() {
+            return className + '.' + name;
+        }
+
+        /**
+         * @return the duration in seconds
+         */
+        public float getDuration() {
+            return duration;
+        }
+
+        public boolean isFailed() {
+            return status == FAILED;
+        }
+
+        public boolean isSkipped() {
+            return status == SKIPPED;
+        }
+    }
+
+    /**
+     * Marks builds which computed splits, so that the index is only maintained for jobs which use it.
+     */
+    static final class Enabled extends InvisibleAction {}
+
+    /**
+     * Records the index of builds which computed splits once their test results are final,
+     * and shares the durations of those usable as reference through the {@link TimingStore}.
+     */
+    @Extension
+    public static final class Recorder extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            if (run.getAction(Enabled.class) == null) {
+                return;
+            }
+            AbstractTestResultAction<?> action = run.getAction(AbstractTestResultAction.class);
+            if (action == null) {
+                return;
+            }
+            try {
+                Object result = action.getResult();
+                if (result instanceof TestResult) {
+                    write(run, (TestResult) result);
+                    if (ParallelTestExecutor.RESULTS_OF_BUILDS_TO_CONSIDER.contains(run.getResult())) {
+                        TimingStore.record(run.getParent(), (TestResult) result);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to record test timings of " + run, e);
+            }
+        }
+    }
+}
@@ -24,9 +24,9 @@ public class TimeDrivenParallelism extends Parallelism {
     public int calculate(List<TestEntity> tests) {
         long total=0;
         for (TestEntity test : tests) {
-            total += test.duration;
+            total += test.micros;
         }
-        long chunk = TimeUnit.MINUTES.toMillis(mins);
+        long chunk = TimeUnit.MINUTES.toMicros(mins);
         return (int)((total+chunk-1)/chunk);
     }
 
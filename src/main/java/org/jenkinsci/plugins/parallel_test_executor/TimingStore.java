@@ -0,0 +1,634 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.ClassResult;
+import hudson.tasks.junit.PackageResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.metadata.PrimaryInstanceMetadataAction;
+import jenkins.util.SystemProperties;
+
+/**
+ * Test case durations shared by all the jobs of a repository, memory-mapped from a single file on the controller.
+ * <p>
+ * All branches of a multibranch project read and write the same durations, so that a new branch gets good splits
+ * from its first build without loading the test results of other branches.
+ * </p>
+ * <p>
+ * The file holds an open-addressing table of fixed-size slots, followed by a heap of strings and an open-addressing
+ * index of that heap by hash, so that strings are looked up in place rather than loaded when the store is opened.
+ * Each scope (the multibranch project, or the job itself) has a head slot holding the generation of its latest
+ * recording and the first slot of a chain linking its test cases; cases of older generations are stale and
+ * dropped when the table is rebuilt, as are scopes whose job no longer exists. The table is rebuilt when it fills up,
+ * and when the store is opened if most of it is stale. The file is a cache: if it is found corrupt, it is started afresh.
+ * Recordings are therefore left to the operating system to write out, only rebuilt files being forced to disk.
+ * </p>
+ * <p>
+ * Only completed builds of the primary branch, or of jobs outside of multibranch projects, are recorded.
+ * A build whose tests ran in some stages only keeps the durations recorded for the other stages.
+ * </p>
+ */
+final class TimingStore {
+
+    private static final Logger LOGGER = Logger.getLogger(TimingStore.class.getName());
+
+    static final boolean DISABLED = SystemProperties.getBoolean(TimingStore.class.getName() + ".disabled");
+
+    private static final int MAGIC = 0x50545453;
+    private static final int HEADER = 32;
+    private static final int SLOT = 40;
+    private static final int STRING_SLOT = 12;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int INITIAL_HEAP = 1 << 18;
+    private static final int NONE = -1;
+
+    // slot layout
+    private static final int HASH = 0, SCOPE = 8, CLASS = 12, NAME = 16, BLOCKS = 20, DURATION = 24, GENERATION = 28, NEXT = 32, STATUS = 36;
+    // string slot layout
+    private static final int STRING_HASH = 0, OFFSET = 8;
+
+    private static TimingStore instance;
+
+    private final File file;
+    /** Whether the job of a scope still exists. */
+    private final Predicate<String> alive;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int used;
+    private int heapSize;
+    private int heapCapacity;
+    /** Number of strings in the heap. */
+    private int stringCount;
+
+    TimingStore(File file, Predicate<String> alive) throws IOException {
+        this.file = file;
+        this.alive = alive;
+        Files.createDirectories(file.getParentFile().toPath());
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!open()) {
+            LOGGER.log(Level.INFO, "Initializing {0}", file);
+            layout(INITIAL_CAPACITY, INITIAL_HEAP, List.of());
+        } else {
+            compact();
+        }
+    }
+
+    /**
+     * @return the store of this controller, or null if not available
+     */
+    @CheckForNull
+    private static synchronized TimingStore get() {
+        if (instance == null) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (DISABLED || jenkins == null) {
+                return null;
+            }
+            try {
+                instance = new TimingStore(new File(jenkins.getRootDir(), "parallel-test-executor/timings.bin"), TimingStore::exists);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to open the shared test timings", e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    private static boolean exists(String scope) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return true;
+        }
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            return jenkins.getItemByFullName(scope) != null;
+        }
+    }
+
+    /**
+     * @return the name under which durations of this job are shared: its multibranch project if it is a branch, else itself
+     */
+    static String scopeOf(@NonNull Job<?, ?> job) {
+        return SCMHead.HeadByItem.findHead(job) != null ? job.getParent().getFullName() : job.getFullName();
+    }
+
+    /**
+     * @return the durations last recorded for the scope of this job, with stage names as blocks, or null if none
+     */
+    @CheckForNull
+    static TestTimingIndex lookup(@CheckForNull Job<?, ?> job) {
+        if (job == null) {
+            return null;
+        }
+        TimingStore store = get();
+        if (store == null) {
+            return null;
+        }
+        synchronized (store) {
+            return store.read(scopeOf(job));
+        }
+    }
+
+    /**
+     * Replaces the durations of the scope of this job with those of this test result,
+     * unless the job is a branch other than the primary branch of its multibranch project.
+     */
+    static void record(@NonNull Job<?, ?> job, @NonNull TestResult result) throws IOException {
+        if (SCMHead.HeadByItem.findHead(job) != null && job.getAction(PrimaryInstanceMetadataAction.class) == null) {
+            return;
+        }
+        TimingStore store = get();
+        if (store == null) {
+            return;
+        }
+        String scope = scopeOf(job);
+        synchronized (store) {
+            store.write(scope, records(scope, result));
+        }
+    }
+
+    @CheckForNull
+    TestTimingIndex read(String scope) {
+        Map<String, List<TestTimingIndex.CaseTiming>> cases = new LinkedHashMap<>();
+        Map<String, Set<String>> blocks = new HashMap<>();
+        Set<String> mixed = new LinkedHashSet<>();
+        for (Record r : current(scope)) {
+            String[] names = r.name.split("\0", 2);
+            cases.computeIfAbsent(r.className, k -> new ArrayList<>()).add(new TestTimingIndex.CaseTiming(names[0], names[1], r.duration, (byte) r.status));
+            Set<String> caseBlocks = blockSet(r.blocks);
+            Set<String> classBlocks = blocks.putIfAbsent(r.className, caseBlocks);
+            if (classBlocks != null && !classBlocks.equals(caseBlocks)) {
+                mixed.add(r.className);
+                classBlocks.addAll(caseBlocks);
+            }
+        }
+        if (cases.isEmpty()) {
+            return null;
+        }
+        List<TestTimingIndex.ClassTiming> classes = new ArrayList<>();
+        for (Map.Entry<String, List<TestTimingIndex.CaseTiming>> entry : cases.entrySet()) {
+            float duration = 0;
+            for (TestTimingIndex.CaseTiming c : entry.getValue()) {
+                duration += c.getDuration();
+            }
+            // the store keeps test cases only, so the setup of the classes is unknown
+            classes.add(new TestTimingIndex.ClassTiming(entry.getKey(), duration, 0, blocks.get(entry.getKey()), mixed.contains(entry.getKey()), entry.getValue()));
+        }
+        return new TestTimingIndex(classes);
+    }
+
+    /**
+     * @return the test cases of the latest generation of a scope
+     */
+    private List<Record> current(String scope) {
+        List<Record> records = new ArrayList<>();
+        int head = find(scope, null, null);
+        if (head == NONE) {
+            return records;
+        }
+        int generation = buffer.getInt(slot(head) + GENERATION);
+        for (int i = buffer.getInt(slot(head) + NEXT); i != NONE; i = buffer.getInt(slot(i) + NEXT)) {
+            int s = slot(i);
+            if (buffer.getInt(s + GENERATION) == generation) {
+                records.add(new Record(scope, string(buffer.getInt(s + CLASS)), string(buffer.getInt(s + NAME)), string(buffer.getInt(s + BLOCKS)),
+                        buffer.getFloat(s + DURATION), generation, buffer.getInt(s + STATUS)));
+            }
+        }
+        return records;
+    }
+
+    static List<Record> records(String scope, TestResult result) {
+        List<Record> records = new ArrayList<>();
+        for (PackageResult pkg : result.getChildren()) {
+            for (ClassResult cr : pkg.getChildren()) {
+                String className = TestClass.getClassName(cr);
+                for (CaseResult cs : cr.getChildren()) {
+                    SuiteResult suite = cs.getSuiteResult();
+                    String blocks = suite == null ? "" : String.join("\n", suite.getEnclosingBlockNames());
+                    // the class of a case is kept, as it may differ from the class it is reported in
+                    records.add(new Record(scope, className, cs.getClassName() + '\0' + cs.getName(), blocks, cs.getDuration(), 0, TestTimingIndex.CaseTiming.status(cs)));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Replaces the test cases of a scope by these, keeping those of stages these were not run in.
+     */
+    void write(String scope, List<Record> records) throws IOException {
+        Set<String> stages = new HashSet<>();
+        for (Record r : records) {
+            stages.add(outermost(r.blocks));
+        }
+        records = new ArrayList<>(records);
+        for (Record r : current(scope)) {
+            if (!stages.contains(outermost(r.blocks))) {
+                records.add(r);
+            }
+        }
+        reserve(scope, records);
+        int head = insert(scope, null, null);
+        int generation = buffer.getInt(slot(head) + GENERATION) + 1;
+        buffer.putInt(slot(head) + GENERATION, generation);
+        for (Record r : records) {
+            r.generation = generation;
+            put(r);
+        }
+    }
+
+    /**
+     * Makes sure the records can be added without growing the table or the heap, rebuilding the file otherwise.
+     */
+    private void reserve(String scope, List<Record> records) throws IOException {
+        Set<String> added = new HashSet<>();
+        for (Record r : records) {
+            added.add(r.className);
+            added.add(r.name);
+            added.add(r.blocks);
+        }
+        added.add(scope);
+        added.add("");
+        added.removeIf(s -> lookup(s) != NONE);
+        int heap = 0;
+        for (String s : added) {
+            heap += 4 + s.getBytes(StandardCharsets.UTF_8).length;
+        }
+        if ((used + records.size() + 1) * 2 <= capacity && heapSize + heap <= heapCapacity && (stringCount + added.size()) * 2 <= stringCapacity()) {
+            return;
+        }
+        rebuild(live(), records.size(), heap);
+    }
+
+    /**
+     * Rebuilds the table if most of it is stale, shrinking the file.
+     */
+    private void compact() throws IOException {
+        List<Record> live = live();
+        if (live.size() * 2 < used) {
+            rebuild(live, 0, 0);
+        }
+    }
+
+    /**
+     * Rebuilds the table with only these records, leaving room for more.
+     */
+    private void rebuild(List<Record> live, int records, int heap) throws IOException {
+        int liveHeap = 0;
+        Set<String> liveStrings = new LinkedHashSet<>();
+        for (Record r : live) {
+            liveStrings.add(r.scope);
+            if (r.className != null) {
+                liveStrings.add(r.className);
+                liveStrings.add(r.name);
+                liveStrings.add(r.blocks);
+            }
+        }
+        for (String s : liveStrings) {
+            liveHeap += 4 + s.getBytes(StandardCharsets.UTF_8).length;
+        }
+        int newCapacity = INITIAL_CAPACITY;
+        while ((live.size() + records + 1) * 4 > newCapacity) {
+            newCapacity <<= 1;
+        }
+        int newHeap = Math.max(INITIAL_HEAP, 2 * (liveHeap + heap));
+        LOGGER.log(Level.FINE, "Rebuilding {0} with {1} live records", new Object[] {file, live.size()});
+        layout(newCapacity, newHeap, live);
+    }
+
+    /**
+     * @return the records of the latest generation of each scope whose job still exists, heads included
+     */
+    private List<Record> live() {
+        List<Record> live = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            int s = slot(i);
+            if (buffer.getLong(s + HASH) == 0 || buffer.getInt(s + CLASS) != NONE) {
+                continue;
+            }
+            String scope = string(buffer.getInt(s + SCOPE));
+            if (!alive.test(scope)) {
+                continue;
+            }
+            int generation = buffer.getInt(s + GENERATION);
+            live.add(new Record(scope, null, null, null, 0, generation, 0));
+            for (int j = buffer.getInt(s + NEXT); j != NONE; j = buffer.getInt(slot(j) + NEXT)) {
+                int c = slot(j);
+                if (buffer.getInt(c + GENERATION) == generation) {
+                    live.add(new Record(scope, string(buffer.getInt(c + CLASS)), string(buffer.getInt(c + NAME)), string(buffer.getInt(c + BLOCKS)),
+                            buffer.getFloat(c + DURATION), generation, buffer.getInt(c + STATUS)));
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Rewrites the file with this layout, holding these records.
+     */
+    private void layout(int newCapacity, int newHeap, List<Record> records) throws IOException {
+        long size = HEADER + (long) newCapacity * (SLOT + 2 * STRING_SLOT) + newHeap;
+        if (channel.size() > size) {
+            try {
+                channel.truncate(size);
+            } catch (IOException e) {
+                // a file still mapped cannot be truncated on some platforms, it is then left as large
+                LOGGER.log(Level.FINE, "Could not shrink " + file, e);
+                size = channel.size();
+            }
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        capacity = newCapacity;
+        heapCapacity = (int) (size - HEADER - (long) capacity * (SLOT + 2 * STRING_SLOT));
+        used = 0;
+        heapSize = 0;
+        stringCount = 0;
+        for (int i = 0; i < capacity; i++) {
+            buffer.putLong(slot(i) + HASH, 0);
+        }
+        for (int i = 0; i < stringCapacity(); i++) {
+            buffer.putLong(stringSlot(i) + STRING_HASH, 0);
+        }
+        for (Record r : records) {
+            if (r.className == null) {
+                int head = insert(r.scope, null, null);
+                buffer.putInt(slot(head) + GENERATION, r.generation);
+            } else {
+                put(r);
+            }
+        }
+        buffer.putInt(0, MAGIC);
+        writeHeader();
+        buffer.force();
+    }
+
+    /**
+     * Maps an existing file.
+     * @return false if the file is new or corrupt
+     */
+    private boolean open() throws IOException {
+        long size = channel.size();
+        if (size < HEADER) {
+            return false;
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        capacity = buffer.getInt(4);
+        used = buffer.getInt(8);
+        heapSize = buffer.getInt(12);
+        heapCapacity = buffer.getInt(16);
+        stringCount = buffer.getInt(20);
+        if (buffer.getInt(0) != MAGIC || Integer.bitCount(capacity) != 1 || HEADER + (long) capacity * (SLOT + 2 * STRING_SLOT) + heapCapacity != size
+                || heapSize < 0 || heapSize > heapCapacity || stringCount < 0 || stringCount > stringCapacity()) {
+            LOGGER.log(Level.WARNING, "Discarding corrupt {0}", file);
+            return false;
+        }
+        return true;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(4, capacity);
+        buffer.putInt(8, used);
+        buffer.putInt(12, heapSize);
+        buffer.putInt(16, heapCapacity);
+        buffer.putInt(20, stringCount);
+    }
+
+    private void put(Record r) {
+        int i = insert(r.scope, r.className, r.name);
+        int s = slot(i);
+        // a case reported twice in the same result takes the time of both
+        float duration = buffer.getInt(s + GENERATION) == r.generation ? buffer.getFloat(s + DURATION) + r.duration : r.duration;
+        buffer.putInt(s + BLOCKS, intern(r.blocks));
+        buffer.putFloat(s + DURATION, duration);
+        buffer.putInt(s + GENERATION, r.generation);
+        buffer.putInt(s + STATUS, r.status);
+    }
+
+    /**
+     * @return the slot of this key, or {@link #NONE}
+     */
+    private int find(String scope, @CheckForNull String className, @CheckForNull String name) {
+        int scopeRef = lookup(scope);
+        int classRef = className == null ? NONE : lookup(className);
+        int nameRef = name == null ? NONE : lookup(name);
+        if (scopeRef == NONE || className != null && (classRef == NONE || nameRef == NONE)) {
+            return NONE;
+        }
+        long hash = hash(scope, className, name);
+        for (int i = index(hash); ; i = (i + 1) & (capacity - 1)) {
+            int s = slot(i);
+            long h = buffer.getLong(s + HASH);
+            if (h == 0) {
+                return NONE;
+            }
+            if (h == hash && buffer.getInt(s + SCOPE) == scopeRef && buffer.getInt(s + CLASS) == classRef && buffer.getInt(s + NAME) == nameRef) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * @return the slot of this key, added to the table and to the chain of its scope if missing
+     */
+    private int insert(String scope, @CheckForNull String className, @CheckForNull String name) {
+        int existing = find(scope, className, name);
+        if (existing != NONE) {
+            return existing;
+        }
+        long hash = hash(scope, className, name);
+        int i = index(hash);
+        while (buffer.getLong(slot(i) + HASH) != 0) {
+            i = (i + 1) & (capacity - 1);
+        }
+        int s = slot(i);
+        buffer.putInt(s + SCOPE, intern(scope));
+        buffer.putInt(s + CLASS, className == null ? NONE : intern(className));
+        buffer.putInt(s + NAME, name == null ? NONE : intern(name));
+        buffer.putInt(s + BLOCKS, NONE);
+        buffer.putFloat(s + DURATION, 0);
+        buffer.putInt(s + GENERATION, 0);
+        buffer.putInt(s + STATUS, 0);
+        if (className == null) {
+            buffer.putInt(s + NEXT, NONE);
+        } else {
+            int head = insert(scope, null, null);
+            buffer.putInt(s + NEXT, buffer.getInt(slot(head) + NEXT));
+            buffer.putInt(slot(head) + NEXT, i);
+        }
+        buffer.putLong(s + HASH, hash);
+        used++;
+        writeHeader();
+        return i;
+    }
+
+    /**
+     * @return the offset of this string in the heap, or {@link #NONE}
+     */
+    private int lookup(String s) {
+        long hash = hash(s);
+        byte[] bytes = null;
+        for (int i = index(hash, stringCapacity()); ; i = (i + 1) & (stringCapacity() - 1)) {
+            int slot = stringSlot(i);
+            long h = buffer.getLong(slot + STRING_HASH);
+            if (h == 0) {
+                return NONE;
+            }
+            if (h == hash) {
+                if (bytes == null) {
+                    bytes = s.getBytes(StandardCharsets.UTF_8);
+                }
+                int offset = buffer.getInt(slot + OFFSET);
+                if (buffer.getInt(heap(offset)) == bytes.length && buffer.slice(heap(offset) + 4, bytes.length).equals(ByteBuffer.wrap(bytes))) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+    private int intern(String s) {
+        int offset = lookup(s);
+        if (offset == NONE) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            offset = heapSize;
+            buffer.putInt(heap(offset), bytes.length);
+            buffer.put(heap(offset) + 4, ByteBuffer.wrap(bytes), 0, bytes.length);
+            heapSize += 4 + bytes.length;
+            long hash = hash(s);
+            int i = index(hash, stringCapacity());
+            while (buffer.getLong(stringSlot(i) + STRING_HASH) != 0) {
+                i = (i + 1) & (stringCapacity() - 1);
+            }
+            buffer.putInt(stringSlot(i) + OFFSET, offset);
+            buffer.putLong(stringSlot(i) + STRING_HASH, hash);
+            stringCount++;
+            writeHeader();
+        }
+        return offset;
+    }
+
+    private String string(int offset) {
+        return decode(offset, buffer.getInt(heap(offset)));
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(heap(offset) + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the name of the outermost enclosing block, such as the stage the tests ran in
+     */
+    private static String outermost(String blocks) {
+        return blocks.substring(blocks.lastIndexOf('\n') + 1);
+    }
+
+    private static Set<String> blockSet(String blocks) {
+        Set<String> set = new LinkedHashSet<>();
+        if (!blocks.isEmpty()) {
+            set.addAll(List.of(blocks.split("\n")));
+        }
+        return set;
+    }
+
+    private int slot(int i) {
+        return HEADER + i * SLOT;
+    }
+
+    private int stringSlot(int i) {
+        return HEADER + capacity * SLOT + i * STRING_SLOT;
+    }
+
+    /**
+     * @return the size of the index of strings, twice that of the table as a case usually adds a string or two
+     */
+    private int stringCapacity() {
+        return 2 * capacity;
+    }
+
+    private int heap(int offset) {
+        return HEADER + capacity * (SLOT + 2 * STRING_SLOT) + offset;
+    }
+
+    private int index(long hash) {
+        return index(hash, capacity);
+    }
+
+    private static int index(long hash, int capacity) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    /**
+     * FNV-1a hash of the key, never 0 as that marks empty slots.
+     */
+    private static long hash(String scope, @CheckForNull String className, @CheckForNull String name) {
+        long h = 0xcbf29ce484222325L;
+        h = hash(h, scope);
+        h = (h ^ (className == null ? 1 : 0)) * 0x100000001b3L;
+        if (className != null) {
+            h = hash(h, className);
+            h = hash(h, name);
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * FNV-1a hash of a string, never 0 as that marks empty slots.
+     */
+    private static long hash(String s) {
+        long h = hash(0xcbf29ce484222325L, s);
+        return h == 0 ? 1 : h;
+    }
+
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return (h ^ 0xff) * 0x100000001b3L;
+    }
+
+    static final class Record {
+        final String scope;
+        final String className;
+        final String name;
+        final String blocks;
+        final float duration;
+        int generation;
+        final int status;
+
+        Record(String scope, String className, String name, String blocks, float duration, int generation, int status) {
+            this.scope = scope;
+            this.className = className;
+            this.name = name;
+            this.blocks = blocks;
+            this.duration = duration;
+            this.generation = generation;
+            this.status = status;
+        }
+    }
+}
@@ -10,16 +10,18 @@ import hudson.model.TaskListener;
 import hudson.tasks.junit.CaseResult;
 import hudson.tasks.junit.ClassResult;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.parallel_test_executor.TestClass;
 import org.jenkinsci.plugins.parallel_test_executor.TestEntity;
+import org.jenkinsci.plugins.parallel_test_executor.TestTimingIndex;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 /**
@@ -33,13 +35,14 @@ import org.kohsuke.stapler.DataBoundConstructor;
  * </p>
  */
 public class JavaClassName extends TestMode {
-    private static final String PATTERNS = String.join(",", List.of(
-            "**/src/test/java/**/Test*.java",
-            "**/src/test/java/**/*Test.java",
-            "**/src/test/java/**/*Tests.java",
-            "**/src/test/java/**/*TestCase.java"
-    ));
-    private static final Pattern TEST = Pattern.compile(".+/src/test/java/(.+)[.]java");
+    /**
+     * Names of directories not searched for test source roots, in addition to hidden ones.
+     */
+    private static final Set<String> EXCLUDED_DIRECTORIES = Set.of(SystemProperties.getString(JavaClassName.class.getName() + ".excludedDirectories", "node_modules,target,build").split("\\s*,\\s*"));
+    /**
+     * Duration assumed for each test method found in the sources when estimating tests without history.
+     */
+    private static final long ESTIMATED_TEST_MILLIS = 10;
 
     @DataBoundConstructor
     public JavaClassName() {}
@@ -56,30 +59,75 @@ public class JavaClassName extends TestMode {
     @NonNull
     public Map<String, TestEntity> getTestEntitiesMap(@NonNull ClassResult classResult) {
         if (isSplitByCase()) {
-            return classResult.getChildren().stream().map(cr -> new JavaTestCase(cr, useParameters())).collect(Collectors.toMap(JavaTestCase::getKey, identity(), JavaTestCase::new));
+            long setup = Math.round(TestClass.getSetupDuration(classResult) * 1000);
+            return classResult.getChildren().stream().map(cr -> new JavaTestCase(cr, setup, useParameters())).collect(Collectors.toMap(JavaTestCase::getKey, identity(), JavaTestCase::new));
         } else {
             TestClass testClass = new TestClass(classResult);
             return Map.of(testClass.getKey(), testClass);
         }
     }
 
+    @Override
+    public Map<String, TestEntity> getTestEntitiesMap(@NonNull TestTimingIndex.ClassTiming classTiming) {
+        if (isSplitByCase()) {
+            long setup = Math.round(classTiming.getSetupDuration() * 1000);
+            return classTiming.getCases().stream().map(ct -> new JavaTestCase(ct.getClassName(), ct.getName(), ct.getDuration(), ct.isFailed(), setup, useParameters())).collect(Collectors.toMap(JavaTestCase::getKey, identity(), JavaTestCase::new));
+        } else {
+            TestClass testClass = new TestClass(classTiming);
+            return Map.of(testClass.getKey(), testClass);
+        }
+    }
+
     @Override
     public Map<String, TestEntity> estimate(FilePath workspace, @NonNull TaskListener listener) throws InterruptedException {
-        // TODO estimate test cases
+        return discover(workspace, Map.of(), new HashSet<>(), listener);
+    }
+
+    /**
+     * Known tests are removed if the package of their top-level class was walked without finding a file of that name,
+     * whatever its extension.
+     */
+    @Override
+    public Map<String, TestEntity> discover(FilePath workspace, @NonNull Map<String, TestEntity> known, @NonNull Set<String> removed,
+                                            @NonNull TaskListener listener) throws InterruptedException {
         if (workspace == null) {
             return Map.of();
         }
         Map<String, TestEntity> data = new TreeMap<>();
         try {
-            for (FilePath test : workspace.list(PATTERNS)) {
-                String testPath = test.getRemote().replace('\\', '/');
-                Matcher m = TEST.matcher(testPath);
-                if (!m.matches() || m.groupCount() != 1) {
-                    throw new IllegalStateException(testPath + " didn't match expected format");
+            JavaTestSources.Result found = workspace.act(new JavaTestSources.Scan(EXCLUDED_DIRECTORIES));
+            for (TestEntity test : known.values()) {
+                // e.g. pkg/subpkg/SomeTest for pkg.subpkg.SomeTest$Nested
+                String source = (test instanceof JavaTestCase ? test.getGroup() : test.getKey()).replace('.', '/');
+                int nested = source.indexOf('$');
+                source = nested == -1 ? source : source.substring(0, nested);
+                int slash = source.lastIndexOf('/');
+                if (found.packages.contains(slash == -1 ? "" : source.substring(0, slash)) && !found.files.contains(source)) {
+                    removed.add(test.getKey());
+                }
+            }
+            Map<String, Map<String, Integer>> sources = found.tests;
+            int cases = 0;
+            for (Map.Entry<String, Map<String, Integer>> source : sources.entrySet()) {
+                String relativePath = source.getKey(); // e.g. pkg/subpkg/SomeTest
+                Map<String, Integer> methods = source.getValue();
+                if (isSplitByCase()) {
+                    // a source without test methods, such as an abstract base class, has no cases to run by name
+                    String className = relativePath.replace('/', '.');
+                    for (Map.Entry<String, Integer> method : methods.entrySet()) {
+                        JavaTestCase testCase = new JavaTestCase(className, method.getKey(), method.getValue() * ESTIMATED_TEST_MILLIS, useParameters());
+                        data.merge(testCase.getKey(), testCase, JavaTestCase::new);
+                    }
+                } else {
+                    int weight = 0;
+                    for (int w : methods.values()) {
+                        weight += w;
+                    }
+                    data.put(relativePath, new TestClass(relativePath, Math.max(1, weight) * ESTIMATED_TEST_MILLIS));
                 }
-                String relativePath = m.group(1); // e.g. pkg/subpkg/SomeTest
-                data.put(relativePath, new TestClass(relativePath));
+                cases += methods.size();
             }
+            listener.getLogger().printf("Found %d test methods in %d test sources%n", cases, sources.size());
         } catch (IOException e) {
             e.printStackTrace(listener.error("Unable to determine tests to run from files"));
         }
@@ -94,15 +142,26 @@ public class JavaClassName extends TestMode {
 
     private static class JavaTestCase extends TestEntity {
         private final String output;
-        private JavaTestCase(CaseResult cr, boolean useParams) {
+        private JavaTestCase(CaseResult cr, long setup, boolean useParams) {
+            this(cr.getClassName(), cr.getName(), cr.getDuration(), cr.isFailed(), setup, useParams);
+        }
+
+        private JavaTestCase(String className, String name, float duration, boolean failed, long setup, boolean useParams) {
             // Parameterized tests use ${fqdnClassName}#${methodName}[{parametersDescription}] format
             if (useParams) {
-                this.output = cr.getClassName() + "#" + cr.getName();
+                this.output = className + "#" + name;
             } else {
                 // Some surefire versions don't support parameters, so just drop them and will sum durations
-                this.output = cr.getClassName() + "#" + cr.getName().split("\\[")[0];
+                this.output = className + "#" + name.split("\\[")[0];
             }
-            this.duration = (long)(cr.getDuration()*1000);  // milliseconds is a good enough precision for us
+            setDuration(duration);
+            this.risk = failed ? 1 : 0;
+            this.setup = setup;
+        }
+
+        private JavaTestCase(String className, String name, long duration, boolean useParams) {
+            this(className, name, 0, false, 0, useParams);
+            this.micros = duration * 1000;
         }
 
         /**
@@ -113,7 +172,10 @@ public class JavaClassName extends TestMode {
                 throw new IllegalArgumentException("Test cases must have the same key");
             }
             this.output = te1.getKey();
-            this.duration = te1.getDuration() + te2.getDuration();
+            // summed in microseconds, as parameterized cases are often shorter than a millisecond each
+            this.micros = te1.getMicros() + te2.getMicros();
+            this.risk = Math.max(te1.getRisk(), te2.getRisk());
+            this.setup = Math.max(te1.getSetup(), te2.getSetup());
         }
 
         @Override
@@ -126,6 +188,16 @@ public class JavaClassName extends TestMode {
             return List.of(output);
         }
 
+        @Override
+        public String getGroup() {
+            return output.substring(0, output.indexOf('#'));
+        }
+
+        @Override
+        public List<String> getGroupElements() {
+            return List.of(getGroup() + "#*");
+        }
+
         @Override
         public String toString() {
             return output;
@@ -0,0 +1,398 @@
+package org.jenkinsci.plugins.parallel_test_executor.testmode;
+
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Finds the test methods declared in Java test sources, without compiling them.
+ * <p>
+ * This only looks at annotations and declarations, so it is fooled by tests inherited from another class or generated
+ * at runtime, but it is good enough to tell a class with hundreds of tests from one with a couple of them.
+ * </p>
+ */
+final class JavaTestSources {
+
+    private static final Set<String> TEST_ANNOTATIONS = Set.of("Test", "ParameterizedTest", "RepeatedTest", "TestFactory", "TestTemplate");
+    private static final Pattern REPETITIONS = Pattern.compile("^\\s*(?:value\\s*=\\s*)?(\\d+)");
+    private static final Pattern JUNIT3_TEST = Pattern.compile("\\bpublic\\s+void\\s+(test\\w*)\\s*\\(\\s*\\)");
+
+    /**
+     * What a {@link Scan} found in the test source roots of the workspace.
+     * Paths are relative to the test source root, e.g. {@code pkg/subpkg/SomeTest}.
+     */
+    static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Weight of each test method, keyed by method name, of each test source, keyed by its path without extension.
+         */
+        final Map<String, Map<String, Integer>> tests;
+        /**
+         * Paths without extension of all files, whether test sources or not, and whatever their language.
+         */
+        final Set<String> files;
+        /**
+         * Paths of all directories.
+         */
+        final Set<String> packages;
+
+        Result(Map<String, Map<String, Integer>> tests, Set<String> files, Set<String> packages) {
+            this.tests = tests;
+            this.files = files;
+            this.packages = packages;
+        }
+    }
+
+    /**
+     * Scans the workspace on the agent holding it, walking directories and parsing sources in parallel.
+     */
+    static final class Scan extends MasterToSlaveFileCallable<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Set<String> excludedDirectories;
+
+        /**
+         * @param excludedDirectories names of directories not to descend into while looking for test source roots,
+         *                            in addition to hidden ones
+         */
+        Scan(Set<String> excludedDirectories) {
+            this.excludedDirectories = new HashSet<>(excludedDirectories);
+        }
+
+        @Override
+        public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            Result found = new Result(new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                Path dir = workspace.toPath();
+                pool.submit(new Walk(null, dir, dir.toRealPath(), isTestSourceRoot(dir) ? dir : null, found, excludedDirectories)).get();
+            } catch (ExecutionException x) {
+                if (x.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) x.getCause()).getCause();
+                }
+                throw new IOException(x.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            return new Result(new TreeMap<>(found.tests), found.files, found.packages);
+        }
+    }
+
+    /**
+     * Lists one directory, parses the test sources it holds, and forks a task per subdirectory.
+     * <p>
+     * Directories are only skipped by name while looking for test source roots: within a root they are packages,
+     * which may well be named {@code build}. Symbolic links to directories are followed, unless they point to a
+     * directory being walked, to avoid cycles.
+     * </p>
+     */
+    private static final class Walk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Walk parent;
+        private final Path dir;
+        /**
+         * {@link #dir} with symbolic links resolved.
+         */
+        private final Path realDir;
+        /**
+         * Innermost test source root containing {@link #dir}, if any.
+         */
+        private final Path root;
+        private final Result found;
+        private final Set<String> excludedDirectories;
+
+        Walk(Walk parent, Path dir, Path realDir, Path root, Result found, Set<String> excludedDirectories) {
+            this.parent = parent;
+            this.dir = dir;
+            this.realDir = realDir;
+            this.root = root;
+            this.found = found;
+            this.excludedDirectories = excludedDirectories;
+        }
+
+        @Override
+        protected void compute() {
+            List<Walk> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    Path realEntry;
+                    if (attributes.isDirectory()) {
+                        realEntry = realDir.resolve(name);
+                    } else if (attributes.isSymbolicLink() && Files.isDirectory(entry)) {
+                        realEntry = entry.toRealPath();
+                        if (isWalking(realEntry)) {
+                            continue;
+                        }
+                    } else {
+                        realEntry = null;
+                    }
+                    if (realEntry != null) {
+                        if (root != null || !name.startsWith(".") && !excludedDirectories.contains(name)) {
+                            subdirectories.add(new Walk(this, entry, realEntry, isTestSourceRoot(entry) ? entry : root, found, excludedDirectories));
+                        }
+                    } else if (root != null) {
+                        String path = relativize(entry);
+                        int extension = path.lastIndexOf('.');
+                        String base = extension > path.lastIndexOf('/') + 1 ? path.substring(0, extension) : path;
+                        found.files.add(base);
+                        if (isTestSource(name) && Files.isRegularFile(entry)) {
+                            found.tests.put(base, parse(read(entry)));
+                        }
+                    }
+                }
+                if (root != null) {
+                    // only once all its files are known
+                    found.packages.add(relativize(dir));
+                }
+            } catch (AccessDeniedException x) {
+                // skip unreadable directories, as a directory scanner would
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            invokeAll(subdirectories);
+        }
+
+        private String relativize(Path path) {
+            return root.relativize(path).toString().replace('\\', '/');
+        }
+
+        /**
+         * @return whether the directory is this one or one of its ancestors
+         */
+        private boolean isWalking(Path realPath) {
+            for (Walk walk = this; walk != null; walk = walk.parent) {
+                if (walk.realDir.equals(realPath)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean isTestSourceRoot(Path dir) {
+        Path test = dir.getParent();
+        Path src = test == null ? null : test.getParent();
+        return src != null && dir.getFileName().toString().equals("java") && test.getFileName().toString().equals("test")
+                && src.getFileName() != null && src.getFileName().toString().equals("src");
+    }
+
+    /**
+     * @return whether the file name follows the default naming conventions of test classes
+     */
+    static boolean isTestSource(String name) {
+        if (!name.endsWith(".java")) {
+            return false;
+        }
+        String base = name.substring(0, name.length() - ".java".length());
+        return base.startsWith("Test") || base.endsWith("Test") || base.endsWith("Tests") || base.endsWith("TestCase");
+    }
+
+    private static String read(Path file) throws IOException {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (MalformedInputException x) {
+            return Files.readString(file, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * @return the weight of each test method declared in the source, that is how many times it is expected to run
+     */
+    static Map<String, Integer> parse(String source) {
+        String code = strip(source);
+        Map<String, Integer> methods = new LinkedHashMap<>();
+        int i = 0;
+        int n = code.length();
+        int weight = 0;
+        int sources = 0;
+        boolean test = false;
+        while (i < n) {
+            char c = code.charAt(i);
+            if (c == '@' && i + 1 < n && Character.isJavaIdentifierStart(code.charAt(i + 1))) {
+                int start = ++i;
+                while (i < n && (Character.isJavaIdentifierPart(code.charAt(i)) || code.charAt(i) == '.')) {
+                    i++;
+                }
+                String name = code.substring(start, i);
+                if (name.equals("interface")) {
+                    continue;
+                }
+                name = name.substring(name.lastIndexOf('.') + 1);
+                int j = skipWhitespace(code, i);
+                String arguments = "";
+                if (j < n && code.charAt(j) == '(') {
+                    int end = matching(code, j);
+                    arguments = code.substring(j + 1, Math.max(j + 1, end - 1));
+                    i = end;
+                }
+                if (TEST_ANNOTATIONS.contains(name)) {
+                    test = true;
+                    weight = 1;
+                    if (name.equals("RepeatedTest")) {
+                        Matcher m = REPETITIONS.matcher(arguments);
+                        weight = m.find() ? Math.max(1, Integer.parseInt(m.group(1))) : 1;
+                    }
+                } else if (name.endsWith("Source")) {
+                    sources += entries(arguments);
+                }
+                continue;
+            }
+            if (test && (c == '(' || c == ';' || c == '{' || c == '=')) {
+                if (c == '(') {
+                    int end = i;
+                    while (end > 0 && Character.isWhitespace(code.charAt(end - 1))) {
+                        end--;
+                    }
+                    int start = end;
+                    while (start > 0 && Character.isJavaIdentifierPart(code.charAt(start - 1))) {
+                        start--;
+                    }
+                    if (start < end) {
+                        methods.merge(code.substring(start, end), Math.max(weight, sources), Integer::sum);
+                    }
+                }
+                test = false;
+                weight = 0;
+                sources = 0;
+            } else if (!test && c != '@' && !Character.isWhitespace(c)) {
+                sources = 0;
+            }
+            i++;
+        }
+        if (methods.isEmpty() && code.contains("extends TestCase")) {
+            Matcher m = JUNIT3_TEST.matcher(code);
+            while (m.find()) {
+                methods.merge(m.group(1), 1, Integer::sum);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * @return the number of entries of the first array in the arguments of an annotation, or 1 if there is none
+     */
+    private static int entries(String arguments) {
+        int open = arguments.indexOf('{');
+        if (open == -1) {
+            return 1;
+        }
+        int count = 0;
+        boolean empty = true;
+        int depth = 0;
+        for (int i = open + 1; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '{' || c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                count++;
+                empty = true;
+                continue;
+            }
+            if (!Character.isWhitespace(c)) {
+                empty = false;
+            }
+        }
+        // a trailing comma is allowed in array initializers
+        return Math.max(1, empty ? count : count + 1);
+    }
+
+    private static int skipWhitespace(String code, int i) {
+        while (i < code.length() && Character.isWhitespace(code.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the parenthesis closing the one at {@code open}
+     */
+    private static int matching(String code, int open) {
+        int depth = 0;
+        for (int i = open; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return code.length();
+    }
+
+    /**
+     * Blanks out comments and the content of string and character literals, keeping the quotes,
+     * so that their content cannot be mistaken for code.
+     */
+    static String strip(String source) {
+        StringBuilder b = new StringBuilder(source.length());
+        int n = source.length();
+        int i = 0;
+        while (i < n) {
+            char c = source.charAt(i);
+            if (c == '/' && i + 1 < n && source.charAt(i + 1) == '/') {
+                while (i < n && source.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < n && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end == -1 ? n : end + 2;
+                b.append(' ');
+            } else if (source.startsWith("\"\"\"", i)) {
+                int end = source.indexOf("\"\"\"", i + 3);
+                i = end == -1 ? n : end + 3;
+                b.append("\"\"");
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < n && source.charAt(i) != c && source.charAt(i) != '\n') {
+                    i += source.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+                b.append(c).append(c);
+            } else {
+                b.append(c);
+                i++;
+            }
+        }
+        return b.toString();
+    }
+
+    private JavaTestSources() {}
+}
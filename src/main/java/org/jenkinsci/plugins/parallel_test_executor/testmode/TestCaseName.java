@@ -10,6 +10,7 @@ import java.util.Map;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.parallel_test_executor.TestCase;
 import org.jenkinsci.plugins.parallel_test_executor.TestEntity;
+import org.jenkinsci.plugins.parallel_test_executor.TestTimingIndex;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 /**
@@ -39,6 +40,16 @@ public class TestCaseName extends TestMode {
         return result;
     }
 
+    @Override
+    public Map<String, TestEntity> getTestEntitiesMap(@NonNull TestTimingIndex.ClassTiming classTiming) {
+        var result = new HashMap<String, TestEntity>();
+        for (TestTimingIndex.CaseTiming caseTiming : classTiming.getCases()) {
+            var testCase = new TestCase(caseTiming, isIncludeClassName());
+            result.put(testCase.getKey(), testCase);
+        }
+        return result;
+    }
+
     @Override
     @NonNull
     public String getWord() {
@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.parallel_test_executor.testmode;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ExtensionPoint;
 import hudson.FilePath;
@@ -7,7 +8,9 @@ import hudson.model.AbstractDescribableImpl;
 import hudson.model.TaskListener;
 import hudson.tasks.junit.ClassResult;
 import java.util.Map;
+import java.util.Set;
 import org.jenkinsci.plugins.parallel_test_executor.TestEntity;
+import org.jenkinsci.plugins.parallel_test_executor.TestTimingIndex;
 
 /**
  * Extension point returning a list of test entities either from previous runs or estimated from the workspace.
@@ -20,6 +23,17 @@ public abstract class TestMode extends AbstractDescribableImpl<TestMode> impleme
     @NonNull
     public abstract Map<String, TestEntity> getTestEntitiesMap(@NonNull ClassResult classResult);
 
+    /**
+     * Variant of {@link #getTestEntitiesMap(ClassResult)} reading the compact timings recorded for a build,
+     * which is much cheaper than loading its full test result.
+     * @param classTiming The recorded timings of a test class
+     * @return a Map of test entities, keyed by their unique key, or null if this mode requires the full test result
+     */
+    @CheckForNull
+    public Map<String, TestEntity> getTestEntitiesMap(@NonNull TestTimingIndex.ClassTiming classTiming) {
+        return null;
+    }
+
     /**
      * This method will be called if no historical test results can be found. In that case, an estimate can be provided from the workspace content.
      * @param workspace The current directory where tests are expected to be found.
@@ -31,6 +45,21 @@ public abstract class TestMode extends AbstractDescribableImpl<TestMode> impleme
         return Map.of();
     }
 
+    /**
+     * This method will be called if historical test results were found, to add the tests written since from the workspace content.
+     * @param workspace The current directory where tests are expected to be found.
+     * @param known The tests of the historical test results, keyed by their unique key.
+     * @param removed To be filled with the keys of known tests whose source is known to be gone from the workspace.
+     *                Tests merely not found, such as tests written in another language, must be kept.
+     * @param listener The build listener if any output needs to be logged.
+     * @return a Map of the test entities found in the workspace, keyed by their unique key
+     * @throws InterruptedException if the build get interrupted while executing this method.
+     */
+    public Map<String, TestEntity> discover(FilePath workspace, @NonNull Map<String, TestEntity> known, @NonNull Set<String> removed,
+                                            @NonNull TaskListener listener) throws InterruptedException {
+        return estimate(workspace, listener);
+    }
+
     /**
      * @return a description of the test entity type that is used for splitting, e.g. "cases"
      */
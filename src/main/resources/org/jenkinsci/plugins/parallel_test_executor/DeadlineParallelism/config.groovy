@@ -0,0 +1,10 @@
+package org.jenkinsci.plugins.parallel_test_executor.DeadlineParallelism
+
+def f = namespace(lib.FormTagLib)
+
+f.entry(title:"Deadline (minutes)", field:"mins") {
+    f.number()
+}
+f.entry(title:"Overhead per execution (seconds)", field:"overheadSeconds") {
+    f.number()
+}
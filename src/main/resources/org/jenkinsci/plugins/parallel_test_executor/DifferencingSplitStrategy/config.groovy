@@ -0,0 +1,10 @@
+package org.jenkinsci.plugins.parallel_test_executor.DifferencingSplitStrategy
+
+def f = namespace(lib.FormTagLib)
+
+f.entry(title:"Milliseconds spent refining the batches", field:"localSearchMillis") {
+    f.number(default: 500)
+}
+f.entry(title:"Percentile to balance", field:"percentile") {
+    f.number(default: 50)
+}
@@ -0,0 +1,7 @@
+package org.jenkinsci.plugins.parallel_test_executor.GreedySplitStrategy
+
+def f = namespace(lib.FormTagLib)
+
+f.entry(title:"Percentile to balance", field:"percentile") {
+    f.number(default: 50)
+}
@@ -0,0 +1,16 @@
+package org.jenkinsci.plugins.parallel_test_executor.LabelLoadParallelism
+
+def f = namespace(lib.FormTagLib)
+
+f.entry(title:"Label", field:"label") {
+    f.textbox()
+}
+f.entry(title:"Maximum number of batches", field:"size") {
+    f.number()
+}
+f.entry(title:"Minimum number of batches", field:"minimum") {
+    f.number(default:1)
+}
+f.entry(title:"Executors provisioned by clouds", field:"cloudExecutors") {
+    f.number(default:0)
+}
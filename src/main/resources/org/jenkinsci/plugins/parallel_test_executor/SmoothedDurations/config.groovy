@@ -0,0 +1,10 @@
+package org.jenkinsci.plugins.parallel_test_executor.SmoothedDurations
+
+def f = namespace(lib.FormTagLib)
+
+f.entry(title:"Number of builds to combine", field:"builds") {
+    f.number(default: 5)
+}
+f.entry(title:"Half-life (in builds)", field:"halfLife") {
+    f.number(default: 2)
+}
@@ -0,0 +1,10 @@
+package org.jenkinsci.plugins.parallel_test_executor.StickySplitStrategy
+
+def f = namespace(lib.FormTagLib)
+
+f.entry(title:"Allowed imbalance (%)", field:"tolerance") {
+    f.number(default: 10)
+}
+f.entry(title:"Percentile to balance", field:"percentile") {
+    f.number(default: 50)
+}
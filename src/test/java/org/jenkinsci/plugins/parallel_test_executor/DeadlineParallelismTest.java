@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeadlineParallelismTest {
+
+    private final TaskListener listener = TaskListener.NULL;
+
+    @Test
+    void smallestCountMeetingDeadline() {
+        List<TestEntity> tests = tests(5, 4, 3, 3);
+        assertEquals(3, calculate(7, 60, tests));
+        // 3 batches would need 6 minutes for 5 minutes of budget
+        assertEquals(4, calculate(7, 120, tests));
+        // the longest test alone does not fit, the others are spread to finish alongside it
+        assertEquals(4, calculate(7, 180, tests));
+        for (TestEntity test : tests) {
+            assertNull(test.knapsack);
+        }
+    }
+
+    @Test
+    void overheadExceedingDeadline() {
+        // tests shorter than a millisecond, with an overhead leaving no budget at all
+        assertEquals(1, calculate(7, 600, tests(0, 0, 0)));
+        assertEquals(1, calculate(7, 420, tests(0, 0, 0)));
+        // the longest test sets the budget
+        assertEquals(4, calculate(7, 600, tests(5, 4, 3, 3)));
+    }
+
+    @Test
+    void overheadLearnedFromPreviousBuilds() {
+        Run<?, ?> build = mock(Run.class);
+        Run<?, ?> previous = mock(Run.class);
+        when(build.getPreviousBuild()).thenReturn((Run) previous);
+        when(previous.getResult()).thenReturn(Result.SUCCESS);
+        // the build took much longer than its splits, which does not count
+        when(previous.getDuration()).thenReturn(TimeUnit.MINUTES.toMillis(30));
+        SplitReport report = new SplitReport();
+        when(previous.getAction(SplitReport.class)).thenReturn(report);
+        List<ParallelTestExecutor.Knapsack> knapsacks = new ArrayList<>();
+        for (long minutes : new long[] {6, 5, 4}) {
+            ParallelTestExecutor.Knapsack k = new ParallelTestExecutor.Knapsack();
+            k.total = TimeUnit.MINUTES.toMicros(minutes);
+            knapsacks.add(k);
+        }
+        SplitReport.planned(previous, new SplitConfiguration(new CountDrivenParallelism(3)), knapsacks);
+        report.actual(0, TimeUnit.MINUTES.toMillis(8));
+        report.actual(1, TimeUnit.MINUTES.toMillis(7));
+        // a split slowed down by its tests
+        report.actual(2, TimeUnit.MINUTES.toMillis(10));
+        assertEquals(TimeUnit.MINUTES.toMillis(2), DeadlineParallelism.learnOverhead(build, listener));
+        DeadlineParallelism parallelism = new DeadlineParallelism(7);
+        assertEquals(4, parallelism.calculate(tests(5, 4, 3, 3), SplitStrategy.getDefault(), build, listener));
+    }
+
+    private int calculate(int mins, int overheadSeconds, List<TestEntity> tests) {
+        DeadlineParallelism parallelism = new DeadlineParallelism(mins);
+        parallelism.setOverheadSeconds(overheadSeconds);
+        return parallelism.calculate(tests, SplitStrategy.getDefault(), null, listener);
+    }
+
+    private static List<TestEntity> tests(long... minutes) {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < minutes.length; i++) {
+            TestClass test = new TestClass("Test" + i);
+            test.micros = TimeUnit.MINUTES.toMicros(minutes[i]);
+            tests.add(test);
+        }
+        Collections.sort(tests);
+        return tests;
+    }
+}
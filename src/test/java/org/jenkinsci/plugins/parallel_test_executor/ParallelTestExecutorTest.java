@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.parallel_test_executor;
 
 import hudson.model.FreeStyleProject;
+import hudson.model.Label;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
@@ -9,6 +10,9 @@ import hudson.model.StringParameterValue;
 import hudson.tasks.junit.TestResultAction;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.metrics.api.Metrics;
 import org.apache.commons.io.FileUtils;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.cps.SnippetizerTester;
@@ -24,6 +28,8 @@ import org.jvnet.hudson.test.recipes.LocalData;
 import static jenkins.test.RunMatchers.logContains;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @WithJenkins
@@ -69,6 +75,114 @@ class ParallelTestExecutorTest {
         jenkinsRule.assertLogContains("splits.size=2", b2);
         jenkinsRule.assertLogContains("splits[0]: includes=false list=[two.java, two.class]", b2);
         jenkinsRule.assertLogContains("splits[1]: includes=true list=[two.java, two.class]", b2);
+        jenkinsRule.assertLogContains("Computed splits in reference lookup=", b2);
+        assertEquals(2, Metrics.metricRegistry().histogram("parallel-test-executor.split.pack.millis").getCount());
+    }
+
+    @Test
+    void labelLoadParallelism(JenkinsRule jenkinsRule) throws Exception {
+        jenkinsRule.createOnlineSlave(Label.get("split"));
+        jenkinsRule.createOnlineSlave(Label.get("split"));
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tests.add(new TestClass("Test" + i));
+        }
+        LabelLoadParallelism parallelism = new LabelLoadParallelism("split", 4);
+        assertEquals(2, parallelism.calculate(tests));
+        parallelism.setMinimum(3);
+        assertEquals(3, parallelism.calculate(tests));
+        assertEquals(1, new LabelLoadParallelism("nonexistent", 4).calculate(tests));
+        new SnippetizerTester(jenkinsRule).assertRoundTrip(new SplitStep(parallelism), "splitTests labelLoad(label: 'split', minimum: 3, size: 4)");
+    }
+
+    @Test
+    void workflowSplitReport(JenkinsRule jenkinsRule) throws Exception {
+        SplitStep step = new SplitStep(new CountDrivenParallelism(2));
+        step.setLabels("fast, slow");
+        step.setSpeeds("slow=2");
+        new SnippetizerTester(jenkinsRule).assertRoundTrip(step, "splitTests labels: 'fast, slow', parallelism: count(2), speeds: 'slow=2'");
+        WorkflowJob p = jenkinsRule.jenkins.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition(
+            """
+            def splits = splitTests parallelism: count(2), generateInclusions: true, labels: 'fast, slow', speeds: 'slow=2'
+            def branches = [:]
+            for (int i = 0; i < splits.size(); i++) {
+              def split = splits[i]
+              branches["split${i}"] = {
+                echo "label=${split.label}"
+                // time before the branch gets an agent, such as waiting in the queue, is not counted
+                sleep time: 3, unit: 'SECONDS'
+                node {
+                  sleep time: 100, unit: 'MILLISECONDS'
+                }
+              }
+            }
+            stage('Lint') {
+              parallel checkstyle: { echo 'checkstyle' }, spotbugs: { echo 'spotbugs' }
+            }
+            parallel branches
+            node {
+              writeFile file: 'TEST-1.xml', text: '<testsuite name="one"><testcase name="x" time="1"/></testsuite>'
+              writeFile file: 'TEST-2.xml', text: '<testsuite name="two"><testcase name="y" time="2"/></testsuite>'
+              junit 'TEST-*.xml'
+            }
+            """, true));
+        WorkflowRun b1 = jenkinsRule.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        assertNull(b1.getAction(SplitReport.class));
+        WorkflowRun b2 = jenkinsRule.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        SplitReport report = b2.getAction(SplitReport.class);
+        assertEquals(1, report.getPlans().size());
+        SplitReport.Plan plan = report.getPlans().get(0);
+        assertEquals(2, plan.getSize());
+        assertEquals("slow", plan.getLabel(1));
+        assertEquals(1000, plan.getBase(1));
+        assertEquals(2000, plan.getPredicted(1));
+        assertEquals(2000, plan.getPredictedMakespan());
+        jenkinsRule.assertLogContains("label=slow", b2);
+        jenkinsRule.assertLogContains("Speed of the agents of each split: 0 on fast x1.00 (unknown), 1 on slow x2.00 (given)", b2);
+        assertTrue(plan.isComplete());
+        assertTrue(plan.getActual(0) >= 100);
+        assertTrue(plan.getActual(1) >= 100);
+        assertTrue(plan.getActual(0) < 3000, plan.getActual(0) + " < 3000");
+        assertTrue(plan.getActual(1) < 3000, plan.getActual(1) + " < 3000");
+        assertEquals(1, report.getTrend().size());
+        jenkinsRule.createWebClient().getPage(b2, report.getUrlName());
+    }
+
+    @Test
+    void workflowTestQueue(JenkinsRule jenkinsRule) throws Exception {
+        WorkflowJob p = jenkinsRule.jenkins.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition(
+            """
+            def workers = testQueue parallelism: count(2)
+            echo "workers=${workers}"
+            def branches = [:]
+            for (int i = 0; i < workers; i++) {
+              def num = i
+              branches["worker${num}"] = {
+                def batch
+                while ((batch = claimTests()) != null) {
+                  echo "batch: includes=${batch.includes} list=${batch.list}"
+                }
+              }
+            }
+            parallel branches
+            node {
+              writeFile file: 'TEST-1.xml', text: '<testsuite name="one"><testcase name="x"/></testsuite>'
+              writeFile file: 'TEST-2.xml', text: '<testsuite name="two"><testcase name="y"/></testsuite>'
+              junit 'TEST-*.xml'
+            }
+            """, true));
+        WorkflowRun b1 = jenkinsRule.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        jenkinsRule.assertLogContains("workers=1", b1);
+        jenkinsRule.assertLogContains("batch: includes=false list=[]", b1);
+        WorkflowRun b2 = jenkinsRule.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        jenkinsRule.assertLogContains("workers=2", b2);
+        jenkinsRule.assertLogContains("batch: includes=true list=[one.java, one.class]", b2);
+        jenkinsRule.assertLogContains("batch: includes=true list=[two.java, two.class]", b2);
+        jenkinsRule.assertLogContains("batch: includes=false list=[one.java, one.class, two.java, two.class]", b2);
+        jenkinsRule.assertLogContains("Claimed 1 test classes", b2);
+        jenkinsRule.assertLogContains("Claimed the test classes of", b2);
     }
 
     @Test
@@ -17,6 +17,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.jvnet.hudson.test.Issue;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -27,6 +28,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -41,9 +44,13 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -123,6 +130,27 @@ class ParallelTestExecutorUnitTest {
         }
     }
 
+    @Test
+    void findTestSplitsFromTimingIndex(@TempDir File rootDir) throws Exception {
+        TestResult testResult = new TestResult(0L, scanner, false);
+        testResult.tally();
+        when(action.getResult()).thenReturn(testResult);
+        when(previousBuild.getRootDir()).thenReturn(rootDir);
+        for (TestMode testMode : List.of(new JavaClassName(), new JavaTestCaseName(), new TestClassAndCaseName())) {
+            List<InclusionExclusionPattern> expected = Splitter.findTestSplits(new CountDrivenParallelism(3), testMode, build, listener, true, null, null);
+            TestTimingIndex.write(previousBuild, testResult);
+            clearInvocations(action);
+            List<InclusionExclusionPattern> splits = Splitter.findTestSplits(new CountDrivenParallelism(3), testMode, build, listener, true, null, null);
+            verify(action, never()).getResult();
+            assertEquals(expected.size(), splits.size());
+            for (int i = 0; i < splits.size(); i++) {
+                assertEquals(expected.get(i).isIncludes(), splits.get(i).isIncludes());
+                assertEquals(expected.get(i).getList(), splits.get(i).getList());
+            }
+            assertTrue(new File(rootDir, TestTimingIndex.FILE_NAME).delete());
+        }
+    }
+
     @Test
     void testWeDoNotCreateMoreSplitsThanThereAreTests() throws Exception {
         // The test report only has 2 classes, so we should only split into 2 test executors
@@ -223,6 +251,67 @@ class ParallelTestExecutorUnitTest {
         assertEquals(5, splits.size());
     }
 
+    @Test
+    void estimateTestCasesFromSources() throws InterruptedException {
+        FilePath workspace = new FilePath(scanner.getBasedir());
+        Map<String, TestEntity> classes = new JavaClassName().estimate(workspace, listener);
+        assertEquals(Set.of("pkg/AbstractBaseTest", "pkg/LegacyTest", "pkg/ManyTest"), classes.keySet());
+        assertEquals(10, classes.get("pkg/AbstractBaseTest").getDuration());
+        assertEquals(20, classes.get("pkg/LegacyTest").getDuration());
+        assertEquals(110, classes.get("pkg/ManyTest").getDuration());
+        Map<String, TestEntity> cases = new JavaTestCaseName().estimate(workspace, listener);
+        assertEquals(Set.of("pkg.LegacyTest#testOne", "pkg.LegacyTest#testTwo",
+                "pkg.ManyTest#plain", "pkg.ManyTest#repeated", "pkg.ManyTest#values", "pkg.ManyTest#csv"), cases.keySet());
+        assertFalse(cases.containsKey("pkg/AbstractBaseTest"));
+        assertEquals(50, cases.get("pkg.ManyTest#repeated").getDuration());
+        assertEquals(30, cases.get("pkg.ManyTest#values").getDuration());
+        assertEquals(20, cases.get("pkg.ManyTest#csv").getDuration());
+    }
+
+    @Test
+    void walkTestSourcesInParallel(@TempDir File dir) throws Exception {
+        FilePath workspace = new FilePath(new File(dir, "workspace"));
+        new FilePath(scanner.getBasedir()).copyRecursiveTo(workspace);
+        Path outside = dir.toPath().resolve("outside");
+        Path pkg = Files.createDirectories(outside.resolve("src/test/java/pkg"));
+        Files.writeString(pkg.resolve("LinkedTest.java"), "package pkg;\n\nclass LinkedTest {\n\n    @Test\n    void kept() {\n    }\n}\n");
+        try {
+            Files.createSymbolicLink(pkg.resolve("loop"), outside);
+            Files.createSymbolicLink(Path.of(workspace.getRemote(), "linked"), outside);
+        } catch (IOException | UnsupportedOperationException x) {
+            assumeTrue(false, "Symbolic links are supported");
+        }
+        Map<String, TestEntity> classes = new JavaClassName().estimate(workspace, listener);
+        Set<String> expected = new HashSet<>(Set.of("com/acme/api/ApiTest", "com/acme/build/BuildTest", "com/acme/target/TargetTest", "pkg/LinkedTest"));
+        for (int i = 1; i <= 6; i++) {
+            expected.add("com/acme/m" + i + "/ModuleTest");
+        }
+        // packages named like excluded directories are kept, vendored or generated copies of test sources are not
+        assertEquals(expected, classes.keySet());
+        assertFalse(classes.containsKey("pkg/VendoredTest"));
+        assertEquals(10, classes.get("com/acme/build/BuildTest").getDuration());
+        Map<String, TestEntity> known = List.of("com.acme.api.ApiTest$Nested", "com.acme.api.GoneTest", "com.acme.build.MixedTest", "org.other.ElsewhereTest")
+                .stream().map(TestClass::new).collect(Collectors.toMap(TestEntity::getKey, t -> t));
+        Set<String> removed = new HashSet<>();
+        assertEquals(classes.keySet(), new JavaClassName().discover(workspace, known, removed, listener).keySet());
+        // nested classes, tests in other languages and tests of packages not walked are kept
+        assertEquals(Set.of("com.acme.api.GoneTest"), removed);
+    }
+
+    @Test
+    void collectTestsInParallel() throws InterruptedException {
+        TestResult testResult = new TestResult(0L, scanner, false);
+        testResult.tally();
+        for (TestMode testMode : List.of(new JavaClassName(), new JavaTestCaseName())) {
+            Map<String, TestEntity> sequential = Splitter.collect(testResult, testMode, 1);
+            Map<String, TestEntity> parallel = Splitter.collect(testResult, testMode, 4);
+            assertEquals(List.copyOf(sequential.keySet()), List.copyOf(parallel.keySet()));
+            for (Map.Entry<String, TestEntity> entry : sequential.entrySet()) {
+                assertEquals(entry.getValue().getDuration(), parallel.get(entry.getKey()).getDuration());
+            }
+        }
+    }
+
     @Test
     void previousBuildIsOngoing() throws IOException {
         Job project = mock(Job.class);
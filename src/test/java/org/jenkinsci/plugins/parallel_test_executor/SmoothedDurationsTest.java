@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SmoothedDurationsTest {
+
+    @Test
+    void newerBuildsWeighMore() {
+        SmoothedDurations model = new SmoothedDurations();
+        model.setHalfLife(1);
+        Map<String, TestEntity> combined = model.combine(List.of(build("A", 100), build("A", 400)));
+        // weights 1 and 1/2
+        assertEquals(200, combined.get("A").getDuration());
+        assertEquals(200_000, combined.get("A").getMicros());
+    }
+
+    @Test
+    void varianceIsWeightedAroundTheMean() {
+        SmoothedDurations model = new SmoothedDurations();
+        model.setHalfLife(1);
+        Map<String, TestEntity> combined = model.combine(List.of(build("A", 100), build("A", 400), build("B", 50)));
+        // (1 * 100^2 + 1/2 * 400^2) / 1.5 - 200^2
+        assertEquals(20_000, combined.get("A").getVariance());
+        assertEquals(0, combined.get("B").getVariance());
+
+        combined = model.combine(List.of(build("A", 300), build("A", 300), build("A", 300)));
+        assertEquals(300, combined.get("A").getDuration());
+        assertEquals(0, combined.get("A").getVariance());
+    }
+
+    @Test
+    void testsMissingFromSomeBuildsKeepTheirOwnAverage() {
+        SmoothedDurations model = new SmoothedDurations();
+        model.setHalfLife(1);
+        Map<String, TestEntity> newest = build("A", 100);
+        Map<String, TestEntity> older = build("B", 300);
+        older.putAll(build("A", 400));
+        Map<String, TestEntity> combined = model.combine(List.of(newest, older, build("B", 600)));
+        assertEquals(200, combined.get("A").getDuration());
+        // weights 1/2 and 1/4, not diluted by the build missing it
+        assertEquals(400, combined.get("B").getDuration());
+        // the newest observation represents the test
+        assertSame(newest.get("A"), combined.get("A"));
+        assertSame(older.get("B"), combined.get("B"));
+    }
+
+    @Test
+    void riskIsTheWeightedShareOfFailures() {
+        SmoothedDurations model = new SmoothedDurations();
+        model.setHalfLife(1);
+        Map<String, TestEntity> failed = build("A", 100);
+        failed.get("A").risk = 1;
+        Map<String, TestEntity> combined = model.combine(List.of(build("A", 100), failed));
+        assertEquals(1.0 / 3, combined.get("A").getRisk(), 1e-9);
+    }
+
+    @Test
+    void settingsAreClamped() {
+        SmoothedDurations model = new SmoothedDurations();
+        model.setBuilds(0);
+        assertEquals(1, model.getBuilds());
+        model.setBuilds(1000);
+        assertEquals(ParallelTestExecutor.NUMBER_OF_BUILDS_TO_SEARCH, model.getBuilds());
+        model.setHalfLife(0);
+        assertEquals(1, model.getHalfLife());
+    }
+
+    private static Map<String, TestEntity> build(String name, long duration) {
+        Map<String, TestEntity> tests = new TreeMap<>();
+        tests.put(name, new TestClass(name, duration));
+        return tests;
+    }
+}
@@ -0,0 +1,201 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.tasks.junit.TestResult;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.FileUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.jenkinsci.plugins.parallel_test_executor.ParallelTestExecutor.Knapsack;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.JavaClassName;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.JavaParameterizedTestCaseName;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.JavaTestCaseName;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.TestClassAndCaseName;
+import org.jenkinsci.plugins.parallel_test_executor.testmode.TestMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures each stage of {@link Splitter#findTestSplits}: collecting the tests of a result, sorting them,
+ * packing them into splits and listing the elements of each split, on synthetic suites.
+ * Run with {@code mvn test -P benchmark}.
+ */
+@JmhBenchmark
+public class SplitPlanningBenchmark {
+
+    private static final int CASES_PER_CLASS = 20;
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    /**
+     * A test result as loaded from the reports of a build.
+     */
+    @State(Scope.Benchmark)
+    public static class Results {
+
+        @Param({"1000", "100000", "1000000"})
+        public int cases;
+
+        @Param({"JavaClassName", "JavaTestCaseName", "JavaParameterizedTestCaseName", "TestClassAndCaseName"})
+        public String testMode;
+
+        TestResult result;
+        TestMode mode;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            switch (testMode) {
+                case "JavaClassName": mode = new JavaClassName(); break;
+                case "JavaTestCaseName": mode = new JavaTestCaseName(); break;
+                case "JavaParameterizedTestCaseName": mode = new JavaParameterizedTestCaseName(); break;
+                default: mode = new TestClassAndCaseName();
+            }
+            Path dir = Files.createTempDirectory("reports");
+            try {
+                writeReports(dir, cases);
+                DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setBasedir(dir.toFile());
+                scanner.setIncludes(new String[] {"*.xml"});
+                scanner.scan();
+                result = new TestResult(0L, scanner, false);
+                result.tally();
+            } finally {
+                FileUtils.deleteDirectory(dir.toFile());
+            }
+        }
+    }
+
+    /**
+     * Tests with their durations, as the duration model hands them to the planner.
+     */
+    @State(Scope.Benchmark)
+    public static class Tests {
+
+        @Param({"1000", "100000", "1000000"})
+        public int cases;
+
+        @Param({"2", "10", "50", "500"})
+        public int splits;
+
+        List<TestEntity> unsorted;
+        List<TestEntity> sorted;
+        List<Knapsack> packed;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(cases);
+            unsorted = new ArrayList<>(cases);
+            for (int i = 0; i < cases; i++) {
+                TestClass test = new TestClass("pkg" + i / CLASSES_PER_PACKAGE + ".Test" + i);
+                test.setDuration(duration(random));
+                unsorted.add(test);
+            }
+            sorted = new ArrayList<>(unsorted);
+            Collections.sort(sorted);
+            packed = knapsacks(splits);
+            GreedySplitStrategy.pack(sorted, packed, 0);
+        }
+    }
+
+    @Benchmark
+    public Map<String, TestEntity> collect(Results results) throws InterruptedException {
+        return Splitter.collect(results.result, results.mode, 1);
+    }
+
+    @Benchmark
+    public Map<String, TestEntity> collectInParallel(Results results) throws InterruptedException {
+        return Splitter.collect(results.result, results.mode, 8);
+    }
+
+    @Benchmark
+    public List<TestEntity> sort(Tests tests) {
+        List<TestEntity> sorted = new ArrayList<>(tests.unsorted);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Knapsack> packGreedy(Tests tests) {
+        // includes clearing the assignment of the previous invocation, which is negligible next to packing
+        for (TestEntity test : tests.sorted) {
+            test.knapsack = null;
+        }
+        List<Knapsack> knapsacks = knapsacks(tests.splits);
+        GreedySplitStrategy.pack(tests.sorted, knapsacks, 0);
+        return knapsacks;
+    }
+
+    @Benchmark
+    public List<Knapsack> packDifferencing(Tests tests) {
+        // includes clearing the assignment of the previous invocation, which is negligible next to packing
+        for (TestEntity test : tests.sorted) {
+            test.knapsack = null;
+        }
+        DifferencingSplitStrategy strategy = new DifferencingSplitStrategy();
+        strategy.setLocalSearchMillis(0);
+        List<Knapsack> knapsacks = knapsacks(tests.splits);
+        strategy.pack(tests.sorted, knapsacks);
+        return knapsacks;
+    }
+
+    @Benchmark
+    public void listElements(Tests tests, Blackhole blackhole) {
+        SplitTable table = new SplitTable(tests.sorted, tests.packed, false);
+        for (int i = 0; i < tests.splits; i++) {
+            for (String element : table.getList(i, false)) {
+                blackhole.consume(element);
+            }
+        }
+    }
+
+    private static List<Knapsack> knapsacks(int splits) {
+        List<Knapsack> knapsacks = new ArrayList<>(splits);
+        for (int i = 0; i < splits; i++) {
+            knapsacks.add(new Knapsack());
+        }
+        return knapsacks;
+    }
+
+    /**
+     * @return a duration in seconds, spread over several orders of magnitude like real suites, many below a millisecond
+     */
+    private static double duration(Random random) {
+        return Math.exp(random.nextGaussian() * 2) / 1000;
+    }
+
+    /**
+     * Writes one report per package, every other class having parameterized cases.
+     */
+    private static void writeReports(Path dir, int cases) throws IOException {
+        Random random = new Random(cases);
+        int classes = Math.max(1, cases / CASES_PER_CLASS);
+        for (int p = 0; p * CLASSES_PER_PACKAGE < classes; p++) {
+            try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(dir.resolve("TEST-pkg" + p + ".xml"), StandardCharsets.UTF_8))) {
+                w.println("<testsuites>");
+                for (int c = p * CLASSES_PER_PACKAGE; c < Math.min(classes, (p + 1) * CLASSES_PER_PACKAGE); c++) {
+                    String className = "pkg" + p + ".Test" + c;
+                    w.printf("<testsuite name=\"%s\">%n", className);
+                    for (int t = 0; t < CASES_PER_CLASS; t++) {
+                        String name = c % 2 == 0 ? "test" + t : "test" + t / 5 + "[" + t % 5 + "]";
+                        w.printf(Locale.ROOT, "<testcase classname=\"%s\" name=\"%s\" time=\"%.6f\"/>%n", className, name, duration(random));
+                    }
+                    w.println("</testsuite>");
+                }
+                w.println("</testsuites>");
+            }
+        }
+    }
+}
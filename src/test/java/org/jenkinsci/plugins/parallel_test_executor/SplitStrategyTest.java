@@ -0,0 +1,255 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SplitStrategyTest {
+
+    @Test
+    void differencingFindsBalancedSplitWhereGreedyDoesNot() {
+        assertEquals(17, pack(new GreedySplitStrategy(), 2, 8, 7, 6, 5, 4));
+        assertEquals(15, pack(new DifferencingSplitStrategy(), 2, 8, 7, 6, 5, 4));
+    }
+
+    @Test
+    void differencingWithoutLocalSearch() {
+        DifferencingSplitStrategy strategy = new DifferencingSplitStrategy();
+        strategy.setLocalSearchMillis(0);
+        assertEquals(16, pack(strategy, 2, 8, 7, 6, 5, 4));
+        assertEquals(13, pack(strategy, 3, 12, 6, 6, 5, 4, 3, 1));
+    }
+
+    @Test
+    void greedySpreadsTestsShorterThanAMillisecond() {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            TestClass test = new TestClass("Test" + i);
+            test.setDuration(i < 500 ? 0.0008 : 0.0002);
+            tests.add(test);
+        }
+        Collections.sort(tests);
+        assertEquals(0, tests.get(0).getDuration());
+        assertEquals(800, tests.get(0).getMicros());
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        new GreedySplitStrategy().pack(tests, knapsacks);
+        assertEquals(250_000, knapsacks.get(0).total);
+        assertEquals(250_000, knapsacks.get(1).total);
+    }
+
+    @Test
+    void greedyGivesLessWorkToSlowerAgents() {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            TestClass test = new TestClass("Test" + i);
+            test.micros = 100_000;
+            tests.add(test);
+        }
+        ParallelTestExecutor.Knapsack fast = new ParallelTestExecutor.Knapsack();
+        ParallelTestExecutor.Knapsack slow = new ParallelTestExecutor.Knapsack();
+        slow.slowdown = 2;
+        new GreedySplitStrategy().pack(tests, List.of(fast, slow));
+        assertEquals(400_000, fast.total);
+        assertEquals(200_000, slow.total);
+        assertEquals(400_000, slow.expected());
+    }
+
+    @Test
+    void agentSpeedsAreParsed() {
+        assertEquals(List.of("gen5", "gen5", "linux && gen3"), AgentSpeeds.parseLabels(" gen5,gen5 , linux && gen3,"));
+        assertEquals(Map.of("gen3", 1.6, "gen5", 1.0), AgentSpeeds.parseSpeeds("gen3=1.6, gen5 = 1"));
+        assertThrows(IllegalArgumentException.class, () -> AgentSpeeds.parseSpeeds("gen3"));
+        assertThrows(IllegalArgumentException.class, () -> AgentSpeeds.parseSpeeds("gen3=0"));
+        assertThrows(IllegalArgumentException.class, () -> AgentSpeeds.parseSpeeds("gen3=fast"));
+    }
+
+    @Test
+    void volatileTestsGetLessWorkWhenBalancingUpperPercentile() {
+        GreedySplitStrategy strategy = new GreedySplitStrategy();
+        strategy.setPercentile(90);
+        TestClass flaky = new TestClass("Flaky");
+        flaky.micros = 100_000;
+        flaky.variance = 10_000;
+        List<TestEntity> tests = new ArrayList<>(List.of(flaky));
+        for (long duration : new long[] {100, 50, 50}) {
+            TestClass test = new TestClass("Test" + tests.size());
+            test.micros = duration * 1000;
+            tests.add(test);
+        }
+        Collections.sort(tests);
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        strategy.pack(tests, knapsacks);
+        assertEquals(100_000, flaky.knapsack.total);
+        assertEquals(200_000, NormalDistribution.makespan(knapsacks, 0.5));
+    }
+
+    @Test
+    void stickyKeepsPreviousAssignmentWithinTolerance() {
+        Map<String, Integer> previous = Map.of("Test0", 0, "Test1", 0, "Test2", 0, "Test3", 1, "Test4", 1);
+        List<TestEntity> tests = new ArrayList<>();
+        for (long duration : new long[] {60, 50, 40, 30, 20, 10}) {
+            TestClass test = new TestClass("Test" + tests.size());
+            test.micros = duration * 1000;
+            tests.add(test);
+        }
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        assertEquals(0, StickySplitStrategy.pack(tests, knapsacks, previous, 0, 100));
+        assertEquals(150_000, knapsacks.get(0).total);
+        assertSame(knapsacks.get(1), tests.get(5).knapsack);
+
+        knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        for (TestEntity test : tests) {
+            test.knapsack = null;
+        }
+        assertEquals(1, StickySplitStrategy.pack(tests, knapsacks, previous, 0, 10));
+        assertEquals(100_000, knapsacks.get(0).total);
+        assertEquals(110_000, knapsacks.get(1).total);
+        assertSame(knapsacks.get(1), tests.get(1).knapsack);
+        assertSame(knapsacks.get(0), tests.get(0).knapsack);
+    }
+
+    @Test
+    void failFastSpreadsRiskyTestsWithoutLengtheningSplits() {
+        ParallelTestExecutor.Knapsack first = new ParallelTestExecutor.Knapsack();
+        ParallelTestExecutor.Knapsack second = new ParallelTestExecutor.Knapsack();
+        List<TestEntity> tests = new ArrayList<>();
+        for (Object[] spec : new Object[][] {{"B", 50, 0.0, second}, {"R1", 50, 1.0, first}, {"A", 40, 0.0, second}, {"R2", 40, 0.5, first}}) {
+            TestClass test = new TestClass((String) spec[0]);
+            test.micros = (Integer) spec[1] * 1000;
+            test.risk = (Double) spec[2];
+            ((ParallelTestExecutor.Knapsack) spec[3]).add(test);
+            tests.add(test);
+        }
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(first, second);
+        assertEquals(2, RiskSpreading.spread(tests, knapsacks, 0));
+        assertSame(first, tests.get(1).knapsack);
+        assertSame(second, tests.get(3).knapsack);
+        assertSame(first, tests.get(2).knapsack);
+        assertEquals(90_000, first.total);
+        assertEquals(90_000, second.total);
+        assertEquals(List.of("R1", "R2", "B", "A"), RiskSpreading.riskFirst(tests).stream().map(TestEntity::getKey).toList());
+    }
+
+    @Test
+    void resourceBudgetSeparatesHeavyTestsWithoutUnbalancing() {
+        ParallelTestExecutor.Knapsack first = new ParallelTestExecutor.Knapsack();
+        ParallelTestExecutor.Knapsack second = new ParallelTestExecutor.Knapsack();
+        List<TestEntity> tests = new ArrayList<>();
+        for (Object[] spec : new Object[][] {{"a.Big1", 100, first}, {"b.A", 100, second}, {"a.Big2", 90, first}, {"b.B", 90, second}}) {
+            TestClass test = new TestClass((String) spec[0]);
+            test.micros = (Integer) spec[1] * 1000;
+            ((ParallelTestExecutor.Knapsack) spec[2]).add(test);
+            tests.add(test);
+        }
+        assertEquals(2, ResourceBudget.tag(tests, "# heavy\na.Big* memory=6144, cpu=4\n\na.Big1 memory=6144\nb.A\n"));
+        assertEquals(Map.of("memory", 6144L), tests.get(0).getResources());
+        assertEquals(Map.of("memory", 6144L, "cpu", 4L), tests.get(2).getResources());
+        assertEquals(Map.of(), tests.get(1).getResources());
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(first, second);
+        Map<String, Long> budget = ResourceBudget.parse("memory=8192");
+        assertEquals(1, ResourceBudget.exceeding(tests, knapsacks, budget));
+        assertEquals(1, ResourceBudget.enforce(tests, knapsacks, budget, 0));
+        assertEquals(0, ResourceBudget.exceeding(tests, knapsacks, budget));
+        assertSame(second, tests.get(2).knapsack);
+        assertSame(first, tests.get(3).knapsack);
+        assertEquals(190_000, first.total);
+        assertEquals(190_000, second.total);
+        assertThrows(IllegalArgumentException.class, () -> ResourceBudget.parse("memory=-1"));
+    }
+
+    @Test
+    void setupKeepsShortGroupsTogether() {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            TestClass withSetup = new TestClass("a.A" + i);
+            withSetup.micros = 10_000;
+            withSetup.setup = 30;
+            tests.add(withSetup);
+            TestClass withoutSetup = new TestClass("b.B" + i);
+            withoutSetup.micros = 10_000;
+            tests.add(withoutSetup);
+        }
+        List<TestEntity> chunked = SetupCost.chunk(tests, 2);
+        assertEquals(1, SetupCost.chunks(chunked));
+        assertEquals(5, chunked.size());
+        assertEquals(70, chunked.get(0).getDuration());
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        new GreedySplitStrategy().pack(chunked, knapsacks);
+        List<TestEntity> unchunked = SetupCost.unchunk(chunked);
+        assertEquals(8, unchunked.size());
+        ParallelTestExecutor.Knapsack a = tests.get(0).knapsack;
+        for (TestEntity test : unchunked) {
+            assertSame(test.getKey().startsWith("a.") ? a : tests.get(1).knapsack, test.knapsack, test.getKey());
+        }
+        assertEquals(70_000, a.total);
+        assertEquals(4, a.count);
+        List<TestEntity> withoutSetup = tests.stream().filter(test -> test.getSetup() == 0).toList();
+        assertSame(withoutSetup, SetupCost.chunk(withoutSetup, 2));
+    }
+
+    @Test
+    void setupSplitsLongGroups() {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            TestClass test = new TestClass("a.A" + i);
+            test.micros = 50_000;
+            test.setup = 10;
+            tests.add(test);
+        }
+        List<TestEntity> chunked = SetupCost.chunk(tests, 2);
+        assertEquals(2, SetupCost.chunks(chunked));
+        assertEquals(1, SetupCost.groups(chunked));
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        new GreedySplitStrategy().pack(chunked, knapsacks);
+        SetupCost.unchunk(chunked);
+        assertEquals(210_000, knapsacks.get(0).total);
+        assertEquals(210_000, knapsacks.get(1).total);
+    }
+
+    @Test
+    void runOrderListsTestsOfEachSplit() {
+        ParallelTestExecutor.Knapsack first = new ParallelTestExecutor.Knapsack();
+        ParallelTestExecutor.Knapsack second = new ParallelTestExecutor.Knapsack();
+        List<TestEntity> tests = new ArrayList<>();
+        for (Object[] spec : new Object[][] {{"a.A1", 50, first}, {"b.B1", 40, first}, {"a.A2", 30, second}, {"b.B2", 20, first}, {"a.A3", 5, first}}) {
+            TestClass test = new TestClass((String) spec[0]);
+            test.micros = (Integer) spec[1] * 1000;
+            ((ParallelTestExecutor.Knapsack) spec[2]).add(test);
+            tests.add(test);
+        }
+        tests.get(3).risk = 1;
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(first, second);
+        assertEquals(List.of(List.of("a.A1", "b.B1", "b.B2", "a.A3"), List.of("a.A2")), RunOrder.LONGEST_FIRST.orders(tests, knapsacks));
+        assertEquals(List.of(List.of("b.B2", "a.A1", "b.B1", "a.A3"), List.of("a.A2")), RunOrder.RISK_FIRST.orders(tests, knapsacks));
+        assertEquals(List.of(List.of("a.A1", "a.A3", "b.B1", "b.B2"), List.of("a.A2")), RunOrder.GROUPED.orders(tests, knapsacks));
+    }
+
+    /**
+     * @return the total of the heaviest knapsack, in milliseconds
+     */
+    static long pack(SplitStrategy strategy, int n, long... durations) {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < durations.length; i++) {
+            TestClass test = new TestClass("Test" + i);
+            test.micros = durations[i] * 1000;
+            tests.add(test);
+        }
+        Collections.sort(tests);
+        List<ParallelTestExecutor.Knapsack> knapsacks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            knapsacks.add(new ParallelTestExecutor.Knapsack());
+        }
+        strategy.pack(tests, knapsacks);
+        for (TestEntity test : tests) {
+            assertNotNull(test.knapsack, test + " was not packed");
+        }
+        return knapsacks.stream().mapToLong(k -> k.total / 1000).max().orElseThrow();
+    }
+}
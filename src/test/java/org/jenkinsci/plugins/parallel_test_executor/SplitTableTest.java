@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SplitTableTest {
+
+    @Test
+    void listsMatchAssignmentAndSurviveSerialization() throws Exception {
+        List<TestEntity> tests = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            TestClass test = new TestClass("pkg.Test" + i);
+            test.micros = 10 * (i + 1) * 1000;
+            tests.add(test);
+        }
+        Collections.sort(tests);
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(new ParallelTestExecutor.Knapsack(), new ParallelTestExecutor.Knapsack());
+        SplitStrategy.getDefault().pack(tests, knapsacks);
+        SplitTable table = new SplitTable(tests, knapsacks);
+        List<InclusionExclusionPattern> patterns = List.of(
+                new InclusionExclusionPattern(table.getList(0, false), false),
+                new InclusionExclusionPattern(table.getList(1, true), true));
+        List<String> expected = new ArrayList<>();
+        for (TestEntity test : tests) {
+            if (test.knapsack == knapsacks.get(1)) {
+                expected.addAll(test.getElements());
+            }
+        }
+        assertEquals(expected, patterns.get(0).getList());
+        assertEquals(expected, patterns.get(1).getList());
+        assertEquals(String.join("", expected).length(), table.length(0, false));
+        assertEquals(String.join("", expected).length(), table.length(1, true));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(patterns));
+        }
+        List<?> copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (List<?>) in.readObject();
+        }
+        InclusionExclusionPattern first = (InclusionExclusionPattern) copy.get(0);
+        InclusionExclusionPattern second = (InclusionExclusionPattern) copy.get(1);
+        assertEquals(expected, first.getList());
+        assertEquals(expected, second.getList());
+        assertSame(first.getList().get(0), second.getList().get(0));
+    }
+
+    @Test
+    void compressesGroupsInOneSplit() {
+        ParallelTestExecutor.Knapsack first = new ParallelTestExecutor.Knapsack();
+        ParallelTestExecutor.Knapsack second = new ParallelTestExecutor.Knapsack();
+        List<TestEntity> tests = List.of(test("b.B1", 185, second), test("a.A1", 100, first), test("a.A2", 80, first), test("b.B2", 10, first));
+        List<ParallelTestExecutor.Knapsack> knapsacks = List.of(first, second);
+
+        SplitTable table = new SplitTable(tests, knapsacks, true);
+        assertEquals(3, table.size());
+        assertEquals(List.of("a/*.java", "a/*.class", "b/B2.java", "b/B2.class"), table.getList(0, true));
+        assertEquals(List.of("b/B1.java", "b/B1.class"), table.getList(1, true));
+        assertEquals(table.getList(0, true), table.getList(1, false));
+
+        assertEquals(0, GroupConsolidation.consolidate(tests, knapsacks, 0, 0));
+        assertEquals(1, GroupConsolidation.consolidate(tests, knapsacks, 10, 0));
+        assertSame(second, tests.get(3).knapsack);
+        table = new SplitTable(tests, knapsacks, true);
+        assertEquals(2, table.size());
+        assertEquals(List.of("b/*.java", "b/*.class"), table.getList(1, true));
+    }
+
+    private static TestEntity test(String name, long duration, ParallelTestExecutor.Knapsack knapsack) {
+        TestClass test = new TestClass(name);
+        test.micros = duration * 1000;
+        knapsack.add(test);
+        return test;
+    }
+}
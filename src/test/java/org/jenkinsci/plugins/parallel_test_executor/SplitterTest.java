@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import hudson.model.TaskListener;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SplitterTest {
+
+    @Test
+    void mergeWorkspaceAddsNewTestsAndDropsRemovedOnes() {
+        Map<String, TestEntity> data = new TreeMap<>();
+        for (Object[] spec : new Object[][] {{"a.Known", 100L}, {"a.Removed", 50L}, {"a.Other", 200L}, {"b.Known", 1000L}, {"b.Outer$Nested", 1500L}, {"c.Elsewhere", 2000L}}) {
+            TestClass test = new TestClass((String) spec[0], (Long) spec[1]);
+            data.put(test.getKey(), test);
+        }
+        Map<String, TestEntity> estimated = new TreeMap<>();
+        for (String path : new String[] {"a/Known", "a/Other", "a/New", "b/Known", "d/New"}) {
+            estimated.put(path, new TestClass(path));
+        }
+        Map<String, TestEntity> merged = Splitter.mergeWorkspace(data, estimated, Set.of("a.Removed"), TaskListener.NULL);
+        // only tests whose source is gone are dropped, not those merely missing from the workspace
+        assertEquals(Set.of("a.Known", "a.Other", "b.Known", "b.Outer$Nested", "c.Elsewhere", "a/New", "d/New"), merged.keySet());
+        assertSame(data.get("a.Known"), merged.get("a.Known"));
+        // median of a.Known and a.Other
+        assertEquals(200, merged.get("a/New").getDuration());
+        // median of all known tests
+        assertEquals(1000, merged.get("d/New").getDuration());
+    }
+
+    @Test
+    void findGapListsTestsMissingFromTheReferenceBuilds() {
+        Map<String, TestEntity> data = new TreeMap<>();
+        Map<String, TestEntity> older = new TreeMap<>();
+        for (Object[] spec : new Object[][] {{"a.One", 500L}, {"a.Two", 400L}, {"b.Three", 80L}, {"b.Four", 20L}}) {
+            TestClass test = new TestClass((String) spec[0], (Long) spec[1]);
+            older.put(test.getKey(), test);
+            if (!test.getKey().startsWith("b.")) {
+                data.put(test.getKey(), test);
+            }
+        }
+        assertEquals(Set.of("b.Three", "b.Four"), Splitter.findGap(data, older).keySet());
+        data.put("b.Three", older.get("b.Three"));
+        assertEquals(Set.of("b.Four"), Splitter.findGap(data, older).keySet());
+    }
+
+    @Test
+    void branchesCountsTheBlocksRightInsideTheInnermostParallel() {
+        // innermost first: branch, parallel, stage
+        assertEquals(3, Splitter.branches(List.of(List.of("10", "5", "3"), List.of("12", "5", "3"), List.of("14", "5", "3"), List.of("10", "5", "3"))));
+        // blocks nested in a branch do not count as branches
+        assertEquals(2, Splitter.branches(List.of(List.of("20", "10", "5", "3"), List.of("21", "10", "5", "3"), List.of("12", "5", "3"))));
+        // one of several branches left, or no parallel step at all
+        assertEquals(1, Splitter.branches(List.of(List.of("10", "5", "3"), List.of("10", "5", "3"))));
+        assertEquals(1, Splitter.branches(List.of(List.of(), List.of())));
+        assertEquals(1, Splitter.branches(List.of()));
+    }
+}
@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins.parallel_test_executor;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingStoreTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void severalScopesShareOneFile() throws Exception {
+        TimingStore store = new TimingStore(new File(dir, "timings.bin"), scope -> true);
+        store.write("org/repo", List.of(record("org/repo", "a.One", "test", "Tests", 1), record("org/repo", "a.Two", "test", "Tests", 2)));
+        store.write("solo", List.of(record("solo", "b.Three", "test", "", 3)));
+        assertEquals(Map.of("a.One.test", 1f, "a.Two.test", 2f), durations(store.read("org/repo")));
+        assertEquals(Map.of("b.Three.test", 3f), durations(store.read("solo")));
+        assertNull(store.read("unknown"));
+    }
+
+    @Test
+    void newGenerationReplacesCasesOfTheSameStage() throws Exception {
+        TimingStore store = new TimingStore(new File(dir, "timings.bin"), scope -> true);
+        store.write("repo", List.of(record("repo", "a.One", "test", "Tests", 1), record("repo", "a.Two", "test", "Tests", 2)));
+        store.write("repo", List.of(record("repo", "a.One", "test", "split 0\nTests", 3)));
+        assertEquals(Map.of("a.One.test", 3f), durations(store.read("repo")));
+    }
+
+    @Test
+    void casesOfStagesNotRunAreKept() throws Exception {
+        TimingStore store = new TimingStore(new File(dir, "timings.bin"), scope -> true);
+        store.write("repo", List.of(record("repo", "a.Unit", "test", "Unit", 1), record("repo", "a.Integration", "test", "Integration", 2)));
+        store.write("repo", List.of(record("repo", "a.Other", "test", "Unit", 3)));
+        assertEquals(Map.of("a.Other.test", 3f, "a.Integration.test", 2f), durations(store.read("repo")));
+    }
+
+    @Test
+    void rebuiltLayoutSurvivesReopening() throws Exception {
+        File file = new File(dir, "timings.bin");
+        TimingStore store = new TimingStore(file, scope -> true);
+        store.write("small", List.of(record("small", "a.One", "test", "", 1)));
+        long initial = file.length();
+        // more cases than half the initial table
+        store.write("big", cases("big", 3000));
+        assertTrue(file.length() > initial);
+        store = new TimingStore(file, scope -> true);
+        assertEquals(3000, store.read("big").getCaseCount());
+        assertEquals(Map.of("a.One.test", 1f), durations(store.read("small")));
+    }
+
+    @Test
+    void staleGenerationsAndDeadScopesAreCompacted() throws Exception {
+        File file = new File(dir, "timings.bin");
+        TimingStore store = new TimingStore(file, scope -> true);
+        store.write("repo", cases("repo", 3000));
+        store.write("repo", List.of(record("repo", "a.One", "test", "", 1)));
+        store.write("gone", List.of(record("gone", "b.One", "test", "", 2)));
+        long grown = file.length();
+        store = new TimingStore(file, scope -> !scope.equals("gone"));
+        assertTrue(file.length() < grown, file.length() + " < " + grown);
+        assertEquals(Map.of("a.One.test", 1f), durations(store.read("repo")));
+        assertNull(store.read("gone"));
+    }
+
+    @Test
+    void truncatedFileIsStartedAfresh() throws Exception {
+        File file = new File(dir, "timings.bin");
+        new TimingStore(file, scope -> true).write("repo", List.of(record("repo", "a.One", "test", "", 1)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(100);
+        }
+        TimingStore store = new TimingStore(file, scope -> true);
+        assertNull(store.read("repo"));
+        store.write("repo", List.of(record("repo", "a.Two", "test", "", 2)));
+        assertEquals(Map.of("a.Two.test", 2f), durations(store.read("repo")));
+    }
+
+    @Test
+    void corruptFileIsStartedAfresh() throws Exception {
+        File file = new File(dir, "timings.bin");
+        new TimingStore(file, scope -> true).write("repo", List.of(record("repo", "a.One", "test", "", 1)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0xdeadbeef);
+        }
+        TimingStore store = new TimingStore(file, scope -> true);
+        assertNull(store.read("repo"));
+        store.write("repo", List.of(record("repo", "a.Two", "test", "", 2)));
+        assertEquals(Map.of("a.Two.test", 2f), durations(new TimingStore(file, scope -> true).read("repo")));
+    }
+
+    private static TimingStore.Record record(String scope, String className, String name, String blocks, float duration) {
+        return new TimingStore.Record(scope, className, className + '\0' + name, blocks, duration, 0, 0);
+    }
+
+    private static List<TimingStore.Record> cases(String scope, int count) {
+        List<TimingStore.Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(record(scope, "a.Test" + i / 10, "test" + i % 10, "", i));
+        }
+        return records;
+    }
+
+    private static Map<String, Float> durations(TestTimingIndex index) {
+        Map<String, Float> durations = new TreeMap<>();
+        for (TestTimingIndex.ClassTiming c : index.getClasses()) {
+            for (TestTimingIndex.CaseTiming ct : c.getCases()) {
+                durations.put(ct.getClassName() + '.' + ct.getName(), ct.getDuration());
+            }
+        }
+        return durations;
+    }
+}
@@ -0,0 +1,7 @@
+package pkg;
+
+public abstract class AbstractBaseTest {
+
+    protected void helper() {
+    }
+}
@@ -0,0 +1,12 @@
+package pkg;
+
+import junit.framework.TestCase;
+
+public class LegacyTest extends TestCase {
+
+    public void testOne() {
+    }
+
+    public void testTwo() {
+    }
+}
@@ -0,0 +1,34 @@
+package pkg;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ManyTest {
+
+    @Test
+    void plain() {
+        String s = "@Test void notATest() {}";
+    }
+
+    // @Test void commentedOut() {}
+
+    @RepeatedTest(5)
+    void repeated() {
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3})
+    void values(int i) {
+    }
+
+    @CsvSource({"a, 1", "b, 2"})
+    @ParameterizedTest
+    void csv(String s, int i) {
+    }
+
+    private void helper() {
+    }
+}
@@ -0,0 +1,10 @@
+package com.acme.api;
+
+import org.junit.jupiter.api.Test;
+
+class ApiTest {
+
+    @Test
+    void kept() {
+    }
+}
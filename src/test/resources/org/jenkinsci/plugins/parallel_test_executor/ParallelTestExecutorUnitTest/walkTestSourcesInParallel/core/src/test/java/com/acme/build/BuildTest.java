@@ -0,0 +1,10 @@
+package com.acme.build;
+
+import org.junit.jupiter.api.Test;
+
+class BuildTest {
+
+    @Test
+    void kept() {
+    }
+}
@@ -0,0 +1,10 @@
+package com.acme.target;
+
+import org.junit.jupiter.api.Test;
+
+class TargetTest {
+
+    @Test
+    void kept() {
+    }
+}
@@ -0,0 +1,10 @@
+package com.acme.m5;
+
+import org.junit.jupiter.api.Test;
+
+class ModuleTest {
+
+    @Test
+    void kept() {
+    }
+}
@@ -0,0 +1,10 @@
+package pkg;
+
+import org.junit.jupiter.api.Test;
+
+class CopiedTest {
+
+    @Test
+    void ignored() {
+    }
+}